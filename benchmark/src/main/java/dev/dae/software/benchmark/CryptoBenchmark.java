@@ -0,0 +1,76 @@
+package dev.dae.software.benchmark;
+
+import dev.dae.software.util.CryptoAES;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CryptoAES 加解密, 比較相容用的靜態方法與快取的 CryptoAES 物件
+ *
+ * @author Ben
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CryptoBenchmark {
+
+    private static final String KEY_SEED = "dae/tenant/0000000000+00:1A:2B:3C:4D:5E";
+
+    @Param({"64", "512", "4096"})
+    private int payloadSize;
+
+    private String plaintext;
+    private byte[] plaintextBytes;
+    private String encrypted;
+    private byte[] encryptedBytes;
+    private byte[] output;
+    private CryptoAES engine;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'x');
+        plaintext = new String(chars);
+        plaintextBytes = plaintext.getBytes(StandardCharsets.UTF_8);
+        engine = CryptoAES.getInstance(KEY_SEED);
+        encryptedBytes = engine.encrypt(plaintextBytes);
+        encrypted = new String(encryptedBytes, StandardCharsets.US_ASCII);
+        output = new byte[Math.max(CryptoAES.maxDecryptedLength(encryptedBytes.length), CryptoAES.maxEncryptedLength(payloadSize))];
+    }
+
+    @Benchmark
+    public byte[] encryptStatic() {
+        return CryptoAES.aesEncryptContent(plaintext, CryptoAES.DEFAULT_CIPHER_INSTANCE, KEY_SEED);
+    }
+
+    @Benchmark
+    public String decryptStatic() {
+        return CryptoAES.aesDecryptContent(encrypted, CryptoAES.DEFAULT_CIPHER_INSTANCE, KEY_SEED);
+    }
+
+    @Benchmark
+    public int encryptIntoBuffer() throws GeneralSecurityException {
+        return engine.encrypt(plaintextBytes, 0, plaintextBytes.length, output, 0);
+    }
+
+    @Benchmark
+    public int decryptIntoBuffer() throws GeneralSecurityException {
+        return engine.decrypt(encryptedBytes, 0, encryptedBytes.length, output, 0);
+    }
+}
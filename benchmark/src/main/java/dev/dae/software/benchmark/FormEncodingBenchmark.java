@@ -0,0 +1,103 @@
+package dev.dae.software.benchmark;
+
+import dev.dae.software.api.FormEncoder;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.api.TenantProfile;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * doRequest 的請求建立: 參數 Map, URLEncoder 與 Collectors.joining 組成的表單內容, HttpRequest 物件, 以及預先編譯的 RequestTemplate
+ *
+ * @author Ben
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormEncodingBenchmark {
+
+    private TenantProfile profile;
+    private HashMap<String, String> loginMap;
+    private HashMap<String, String> dataMap;
+    private TenantApiClient api;
+
+    @Setup
+    public void setup() {
+        profile = new TenantProfile("tenant@example.com", "password", "0000000000");
+        profile.setDeviceCode("0000000000001");
+        loginMap = TenantOperation.LOGIN.bodyMap(profile);
+        dataMap = TenantOperation.DATA_ROOM_CONSUMPTION.bodyMap(profile);
+        api = new TenantApiClient(HttpClient.newHttpClient(), URI.create("http://clhlabs.dae.tw/ws/app.php"));
+    }
+
+    /**
+     * RequestTemplate 之前 doRequest 的編碼方式, 作為比較基準
+     */
+    private static String encodeForm(Map<String, String> bodyMap) {
+        return bodyMap.entrySet()
+                .stream()
+                .map(entry -> String.format("%s=%s", URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8), URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8)))
+                .collect(Collectors.joining("&"));
+    }
+
+    @Benchmark
+    public String encodeLoginForm() {
+        return encodeForm(loginMap);
+    }
+
+    @Benchmark
+    public String encodeDataForm() {
+        return encodeForm(dataMap);
+    }
+
+    @Benchmark
+    public String buildAndEncodeDataForm() {
+        return encodeForm(TenantOperation.DATA_ROOM_CONSUMPTION.bodyMap(profile));
+    }
+
+    @Benchmark
+    public HttpRequest buildDataRequest() {
+        return api.buildRequest(TenantOperation.DATA_ROOM_CONSUMPTION.bodyMap(profile), "00000000000000000000000000");
+    }
+
+    @Benchmark
+    public byte[] encodeLoginBytes() {
+        return FormEncoder.encode(loginMap);
+    }
+
+    @Benchmark
+    public byte[] templateLoginBody() {
+        return api.template(TenantOperation.LOGIN, profile).encode(profile);
+    }
+
+    @Benchmark
+    public byte[] templateDataBody() {
+        return api.template(TenantOperation.DATA_ROOM_CONSUMPTION, profile).encode(profile);
+    }
+
+    @Benchmark
+    public HttpRequest templateDataRequest() {
+        return api.template(TenantOperation.DATA_ROOM_CONSUMPTION, profile).build(profile, "00000000000000000000000000");
+    }
+}
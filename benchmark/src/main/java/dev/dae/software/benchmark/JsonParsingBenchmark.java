@@ -0,0 +1,87 @@
+package dev.dae.software.benchmark;
+
+import dev.dae.software.api.ApiResponse;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import java.io.StringReader;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 回應解析方式比較: 建立完整樹的 jakarta JsonReader, org.json JSONObject 與串流讀取的 ApiResponse
+ *
+ * @author Ben
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonParsingBenchmark {
+
+    private static final Set<String> LOGIN_DATA_FIELDS = Set.of("mqtt", "channels");
+
+    @Param({"10", "1000", "20000"})
+    private int records;
+
+    private String reportBody;
+    private String loginBody;
+
+    @Setup
+    public void setup() {
+        reportBody = ReportBodies.report(records);
+        loginBody = ReportBodies.login();
+    }
+
+    @Benchmark
+    public boolean reportJakartaReader() {
+        try (JsonReader reader = Json.createReader(new StringReader(reportBody))) {
+            JsonObject bodyObject = reader.readObject();
+            return bodyObject.getBoolean("result", true);
+        }
+    }
+
+    @Benchmark
+    public boolean reportOrgJson() {
+        JSONObject bodyObject = new JSONObject(reportBody);
+        return bodyObject.optBoolean("result", true);
+    }
+
+    @Benchmark
+    public String reportOrgJsonLogged() {
+        JSONObject bodyObject = new JSONObject(reportBody);
+        return String.format("%s bodyObject = %s%n%n", "refund-report", bodyObject);
+    }
+
+    @Benchmark
+    public String reportStreaming() {
+        return String.format("%s %s%n%n", "refund-report", ApiResponse.parse(reportBody, Set.of()));
+    }
+
+    @Benchmark
+    public String loginJakartaReader() {
+        try (JsonReader reader = Json.createReader(new StringReader(loginBody))) {
+            JsonObject bodyObject = reader.readObject();
+            return bodyObject.getJsonObject("data").getJsonObject("mqtt").getString("topic");
+        }
+    }
+
+    @Benchmark
+    public String loginStreaming() {
+        return ApiResponse.parse(loginBody, LOGIN_DATA_FIELDS).getData().getJsonObject("mqtt").getString("topic");
+    }
+}
@@ -0,0 +1,85 @@
+package dev.dae.software.benchmark;
+
+import dev.dae.software.mock.MockMqttBroker;
+import dev.dae.software.mqtt.DevicePublisher;
+import dev.dae.software.mqtt.MeterSubscriber;
+import dev.dae.software.mqtt.TenantChannels;
+import dev.dae.software.util.CryptoAES;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 由同一程序內的 MockMqttBroker 不限速注入加密的電表讀值, 量測 MeterSubscriber (Paho 收訊, 佇列分派, 依 topic 選迴路金鑰, 解密) 每則訊息的處理時間; 每次呼叫等到全部訊息被解密或丟棄
+ *
+ * @author Ben
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MeterSubscriberBenchmark {
+
+    private static final int MESSAGES = 20_000;
+    private static final String TOPIC = "dae/tenant/2119270014";
+    @Param({"1", "4"})
+    private int workers;
+    @Param({"0", "1"})
+    private int qos;
+    @Param({"1", "8"})
+    private int channels;
+    private MockMqttBroker broker;
+    private MeterSubscriber subscriber;
+    private List<String> macAddresses;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, MqttException {
+        broker = MockMqttBroker.start(0);
+        macAddresses = DevicePublisher.simulatedMacAddresses(channels);
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setMaxInflight(1000);
+        subscriber = new MeterSubscriber(new MqttClient(broker.getServerUri(), "benchmark-subscriber", new MemoryPersistence()), options,
+                TenantChannels.of(TOPIC, macAddresses, CryptoAES.DEFAULT_CIPHER_INSTANCE), workers, MESSAGES, null);
+        subscriber.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s%n%s%n", subscriber.summary(), broker.summary());
+        subscriber.close();
+        broker.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long receiveAndDecrypt() {
+        long target = subscriber.getDecrypted() + subscriber.getDropped() + subscriber.getFailed() + subscriber.getUnmatched() + broker.getDropped() + MESSAGES;
+        broker.inject(TOPIC, macAddresses, CryptoAES.DEFAULT_CIPHER_INSTANCE, qos, Double.POSITIVE_INFINITY, MESSAGES);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (subscriber.getDecrypted() + subscriber.getDropped() + subscriber.getFailed() + subscriber.getUnmatched() + broker.getDropped() < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(100_000);
+        }
+        return subscriber.getDecrypted();
+    }
+}
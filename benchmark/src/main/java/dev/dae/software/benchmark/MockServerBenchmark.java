@@ -0,0 +1,82 @@
+package dev.dae.software.benchmark;
+
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.api.TenantProfile;
+import dev.dae.software.api.TransportClient;
+import dev.dae.software.api.TransportProfile;
+import dev.dae.software.mock.MockBehavior;
+import dev.dae.software.mock.MockTenantServer;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 對同一程序內無延遲的 MockTenantServer 送出請求, 量測客戶端本身 (請求建立, 傳輸, 回應讀取) 的吞吐量上限, 不受網路與 PHP 後端影響
+ *
+ * @author Ben
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MockServerBenchmark {
+
+    @Param({"h1", "h2"})
+    private String transport;
+    private MockTenantServer server;
+    private TransportClient client;
+    private TenantApiClient api;
+    private TenantProfile profile;
+    private String sessionId;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        server = MockTenantServer.start(0, MockBehavior.DEFAULT.withReportRows(200));
+        client = TransportProfile.parse(transport).newClient();
+        api = new TenantApiClient(client, server.getEndpoint());
+        profile = new TenantProfile("tenant-001@mock", "mock", "0000000001");
+        HttpResponse<String> response = client.send(api.template(TenantOperation.LOGIN, profile).build(profile, ""), HttpResponse.BodyHandlers.ofString());
+        sessionId = TenantApiClient.parseSetCookie(TenantApiClient.setCookie(response).orElseThrow()).get("PHPSESSID");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s%n%s%n", client.summary(), server.summary());
+        server.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public HttpResponse<String> dataSingleThread() throws IOException, InterruptedException {
+        return client.send(api.template(TenantOperation.DATA_ROOM_CONSUMPTION, profile).build(profile, sessionId), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public HttpResponse<String> data16Threads() throws IOException, InterruptedException {
+        return client.send(api.template(TenantOperation.DATA_ROOM_CONSUMPTION, profile).build(profile, sessionId), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public HttpResponse<String> report16Threads() throws IOException, InterruptedException {
+        return client.send(api.template(TenantOperation.REFUND_REPORT, profile).build(profile, sessionId), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,41 @@
+package dev.dae.software.benchmark;
+
+import java.util.Locale;
+
+/**
+ * 產生與 refund-report, credit-report 回應格式相近的測試內容
+ *
+ * @author Ben
+ */
+final class ReportBodies {
+
+    private ReportBodies() {
+    }
+
+    /**
+     * @param records 記錄筆數
+     * @return {"result":true,"data":[...]} 格式的回應內容
+     */
+    static String report(int records) {
+        StringBuilder builder = new StringBuilder(records * 160 + 64);
+        builder.append("{\"result\":true,\"message\":\"\",\"data\":[");
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(String.format(Locale.ROOT,
+                    "{\"id\":%d,\"device-code\":\"13019071%05d\",\"channel-name\":\"A%03d\",\"amount\":%d,\"balance\":%.2f,\"status\":\"done\",\"created-at\":\"2021-%02d-%02d 10:%02d:00\"}",
+                    i, i % 100000, i % 1000, 100 + i % 900, 1000 + i * 0.37, i % 12 + 1, i % 28 + 1, i % 60));
+        }
+        builder.append("]}");
+        return builder.toString();
+    }
+
+    /**
+     * @return 登入回應格式的內容
+     */
+    static String login() {
+        return "{\"result\":true,\"message\":\"\",\"data\":{\"tenant-id\":1024,\"mqtt\":{\"host\":\"clh25.dae.tw\",\"port\":1883,\"topic\":\"dae/tenant/0000000000\"},"
+                + "\"channels\":[{\"mac-address\":\"00:1A:2B:3C:4D:5E\",\"channel-name\":\"A140\",\"device-code\":\"0000000000001\"}]}}";
+    }
+}
@@ -0,0 +1,26 @@
+package dev.dae.software;
+
+import dev.dae.software.app.MainFrame;
+import dev.dae.software.cli.TenantCli;
+
+/**
+ * jar 的進入點: 沒有參數 (或參數為 gui) 時開啟 MainFrame, 否則以 TenantCli 執行命令, 不載入 AWT/Swing
+ *
+ * @author Ben
+ */
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 && Boolean.getBoolean("java.awt.headless")) {
+            // 沒有顯示器時不嘗試開啟視窗, 顯示命令列用法
+            TenantCli.main(new String[]{"--help"});
+        } else if (args.length == 0 || "gui".equals(args[0])) {
+            MainFrame.main(args);
+        } else {
+            TenantCli.main(args);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package dev.dae.software.api;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 以 JsonParser 串流讀取房客 API 回應, 只取出 result, message 與指定的 data 欄位
+ * <p>
+ * 其餘的 data 欄位只記錄純量值, 陣列只計算筆數, 物件直接略過, 不建立完整的 JSON 樹
+ *
+ * @author Ben
+ */
+public class ApiResponse {
+
+    private final boolean result;
+    private final String message;
+    private final JsonObject data;
+    private final Map<String, String> fields;
+    private final int dataCount;
+
+    private ApiResponse(boolean result, String message, JsonObject data, Map<String, String> fields, int dataCount) {
+        this.result = result;
+        this.message = message;
+        this.data = data;
+        this.fields = Collections.unmodifiableMap(fields);
+        this.dataCount = dataCount;
+    }
+
+    /**
+     * @param body 回應內容
+     * @param dataFields 要完整取出的 data 欄位
+     * @return ApiResponse 物件
+     * @throws JsonException 回應不是 JSON 物件
+     */
+    public static ApiResponse parse(String body, Set<String> dataFields) {
+        return parse(new StringReader(body), dataFields);
+    }
+
+    /**
+     * @param body 回應內容串流 (UTF-8)
+     * @param dataFields 要完整取出的 data 欄位
+     * @return ApiResponse 物件
+     * @throws JsonException 回應不是 JSON 物件
+     */
+    public static ApiResponse parse(InputStream body, Set<String> dataFields) {
+        try (JsonParser parser = Json.createParser(body)) {
+            return parse(parser, dataFields);
+        }
+    }
+
+    /**
+     * @param body 回應內容
+     * @param dataFields 要完整取出的 data 欄位
+     * @return ApiResponse 物件
+     * @throws JsonException 回應不是 JSON 物件
+     */
+    public static ApiResponse parse(Reader body, Set<String> dataFields) {
+        try (JsonParser parser = Json.createParser(body)) {
+            return parse(parser, dataFields);
+        }
+    }
+
+    /**
+     * 只讀到最上層的 result 為止, 不讀取其餘內容; 內容中其他位置的 "result":false (例如 message 或 data 內) 不影響結果
+     *
+     * @param body 回應內容
+     * @return result 不是 false; 沒有 result 或不是 JSON 物件時為 true, 與 parse 相同
+     */
+    public static boolean readResult(String body) {
+        try (JsonParser parser = Json.createParser(new StringReader(body))) {
+            if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+                return true;
+            }
+            while (parser.next() == Event.KEY_NAME) {
+                String key = parser.getString();
+                Event event = parser.next();
+                if ("result".equals(key)) {
+                    return event != Event.VALUE_FALSE;
+                }
+                if (event == Event.START_OBJECT) {
+                    parser.skipObject();
+                } else if (event == Event.START_ARRAY) {
+                    parser.skipArray();
+                }
+            }
+            return true;
+        } catch (JsonException | NoSuchElementException ex) {
+            return true;
+        }
+    }
+
+    private static ApiResponse parse(JsonParser parser, Set<String> dataFields) {
+        if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+            throw new JsonException("response is not a JSON object");
+        }
+        boolean result = true;
+        String message = "";
+        JsonObjectBuilder data = Json.createObjectBuilder();
+        Map<String, String> fields = new LinkedHashMap<>();
+        int dataCount = -1;
+        while (parser.next() == Event.KEY_NAME) {
+            String key = parser.getString();
+            Event event = parser.next();
+            switch (key) {
+                case "result" -> {
+                    result = event != Event.VALUE_FALSE;
+                    skipValue(parser, event);
+                }
+                case "message" ->
+                    message = skipValue(parser, event);
+                case "data" -> {
+                    if (event == Event.START_OBJECT) {
+                        readData(parser, dataFields, data, fields);
+                    } else if (event == Event.START_ARRAY) {
+                        dataCount = countArray(parser);
+                    } else {
+                        fields.put(key, skipValue(parser, event));
+                    }
+                }
+                default ->
+                    fields.put(key, skipValue(parser, event));
+            }
+        }
+        return new ApiResponse(result, message, data.build(), fields, dataCount);
+    }
+
+    private static void readData(JsonParser parser, Set<String> dataFields, JsonObjectBuilder data, Map<String, String> fields) {
+        while (parser.next() == Event.KEY_NAME) {
+            String key = parser.getString();
+            Event event = parser.next();
+            if (dataFields.contains(key)) {
+                data.add(key, parser.getValue());
+            } else {
+                fields.put(key, skipValue(parser, event));
+            }
+        }
+    }
+
+    /**
+     * 略過目前的值
+     *
+     * @return 純量值的文字, 陣列為 [筆數], 物件為 {...}
+     */
+    private static String skipValue(JsonParser parser, Event event) {
+        return switch (event) {
+            case START_ARRAY ->
+                "[" + countArray(parser) + "]";
+            case START_OBJECT -> {
+                parser.skipObject();
+                yield "{...}";
+            }
+            case VALUE_STRING, VALUE_NUMBER ->
+                parser.getString();
+            case VALUE_TRUE ->
+                "true";
+            case VALUE_FALSE ->
+                "false";
+            default ->
+                "null";
+        };
+    }
+
+    /**
+     * 在 START_ARRAY 之後計算元素數量並前進到對應的 END_ARRAY, 不取出任何值
+     */
+    private static int countArray(JsonParser parser) {
+        int count = 0;
+        int depth = 0;
+        while (true) {
+            switch (parser.next()) {
+                case START_ARRAY, START_OBJECT -> {
+                    if (depth == 0) {
+                        count++;
+                    }
+                    depth++;
+                }
+                case END_ARRAY, END_OBJECT -> {
+                    if (depth == 0) {
+                        return count;
+                    }
+                    depth--;
+                }
+                case KEY_NAME -> {
+                }
+                default -> {
+                    if (depth == 0) {
+                        count++;
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean getResult() {
+        return result;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return 指定取出的 data 欄位
+     */
+    public JsonObject getData() {
+        return data;
+    }
+
+    /**
+     * @return 未取出的欄位摘要
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return data 為陣列時的筆數, 否則為 -1
+     */
+    public int getDataCount() {
+        return dataCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("result = ").append(result);
+        if (!message.isEmpty()) {
+            builder.append(", message = ").append(message);
+        }
+        if (dataCount >= 0) {
+            builder.append(", data = [").append(dataCount).append(']');
+        }
+        if (!data.isEmpty()) {
+            builder.append(", data = ").append(data);
+        }
+        if (!fields.isEmpty()) {
+            builder.append(", fields = ").append(fields);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,164 @@
+package dev.dae.software.api;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * 以 HttpClient.sendAsync 非同步送出房客 API 請求, 限制同時進行中的請求數量, 超出的請求在有界佇列中等待
+ *
+ * @author Ben
+ */
+public class AsyncRequestPipeline {
+
+    private final HttpClient client;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ArrayBlockingQueue<PendingRequest> pending;
+    private final Executor callbackExecutor;
+    private volatile RequestCoalescer requestCoalescer;
+
+    /**
+     * @param client submit(HttpRequest) 使用的 HttpClient 物件
+     * @param maxInFlight 同時進行中的請求上限
+     * @param queueCapacity 等待佇列容量, 佇列滿時新請求以 RejectedExecutionException 失敗
+     * @param callbackExecutor 執行完成回呼的 Executor, 例如 SwingUtilities::invokeLater
+     */
+    public AsyncRequestPipeline(HttpClient client, int maxInFlight, int queueCapacity, Executor callbackExecutor) {
+        this.client = Objects.requireNonNull(client);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.callbackExecutor = Objects.requireNonNull(callbackExecutor);
+    }
+
+    /**
+     * 房客 API 請求先經過 RequestCoalescer, 相同的查詢請求進行中時不再排入佇列
+     *
+     * @param requestCoalescer RequestCoalescer 物件, null 時每個請求都送出
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * @return 進行中的請求數量
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * @return 等待中的請求數量
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 送出請求, 回傳的 CompletableFuture 在 HttpClient 的執行緒上完成
+     *
+     * @param request HTTP 請求物件
+     * @return HTTP 回應的 CompletableFuture 物件
+     */
+    public CompletableFuture<HttpResponse<String>> submit(HttpRequest request) {
+        return submit(client, request);
+    }
+
+    private CompletableFuture<HttpResponse<String>> submit(HttpClient client, HttpRequest request) {
+        PendingRequest pendingRequest = new PendingRequest(client, request);
+        if (!pending.offer(pendingRequest)) {
+            pendingRequest.future.completeExceptionally(new RejectedExecutionException("request queue is full"));
+            return pendingRequest.future;
+        }
+        drain();
+        return pendingRequest.future;
+    }
+
+    /**
+     * 以房客 API 的 HttpClient 送出請求
+     *
+     * @param api 房客 API
+     * @param bodyMap 請求參數
+     * @param sessionId PHPSESSID
+     * @return HTTP 回應的 CompletableFuture 物件
+     */
+    public CompletableFuture<HttpResponse<String>> submit(TenantApiClient api, Map<String, String> bodyMap, String sessionId) {
+        RequestCoalescer coalescer = requestCoalescer;
+        if (Objects.isNull(coalescer)) {
+            return submit(api.getClient(), api.buildRequest(bodyMap, sessionId));
+        }
+        return coalescer.sendAsync(api.getEndpoint(), sessionId, bodyMap, () -> submit(api.getClient(), api.buildRequest(bodyMap, sessionId)));
+    }
+
+    /**
+     * 送出房客 API 請求, 回呼在 callbackExecutor 上執行
+     *
+     * @param api 房客 API
+     * @param bodyMap 請求參數
+     * @param sessionId PHPSESSID
+     * @param onResponse 收到回應時的回呼
+     * @param onFailure 連線失敗, 逾時或被拒絕時的回呼
+     */
+    public void submit(TenantApiClient api, Map<String, String> bodyMap, String sessionId, Consumer<HttpResponse<String>> onResponse, Consumer<Throwable> onFailure) {
+        submit(api, bodyMap, sessionId).whenComplete((response, throwable) -> callbackExecutor.execute(() -> {
+            if (Objects.isNull(throwable)) {
+                onResponse.accept(response);
+            } else {
+                onFailure.accept(throwable instanceof CompletionException && Objects.nonNull(throwable.getCause()) ? throwable.getCause() : throwable);
+            }
+        }));
+    }
+
+    private void drain() {
+        while (!pending.isEmpty() && inFlight.tryAcquire()) {
+            PendingRequest pendingRequest = pending.poll();
+            if (Objects.isNull(pendingRequest)) {
+                inFlight.release();
+                return;
+            }
+            dispatch(pendingRequest);
+        }
+    }
+
+    private void dispatch(PendingRequest pendingRequest) {
+        CompletableFuture<HttpResponse<String>> sendFuture;
+        try {
+            sendFuture = pendingRequest.client.sendAsync(pendingRequest.request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException ex) {
+            inFlight.release();
+            pendingRequest.future.completeExceptionally(ex);
+            return;
+        }
+        sendFuture.whenComplete((response, throwable) -> {
+            inFlight.release();
+            drain();
+            if (Objects.isNull(throwable)) {
+                pendingRequest.future.complete(response);
+            } else {
+                pendingRequest.future.completeExceptionally(throwable);
+            }
+        });
+    }
+
+    private static class PendingRequest {
+
+        private final HttpClient client;
+        private final HttpRequest request;
+        private final CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+
+        PendingRequest(HttpClient client, HttpRequest request) {
+            this.client = client;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev.dae.software.api;
+
+import java.util.Map;
+
+/**
+ * 直接寫入 byte 陣列的 application/x-www-form-urlencoded 編碼, 結果與 URLEncoder.encode(value, UTF_8) 相同
+ *
+ * @author Ben
+ */
+public final class FormEncoder {
+
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+
+    private FormEncoder() {
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    /**
+     * @param value 原始字串
+     * @return 編碼後的 byte 數
+     */
+    public static int encodedLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c) || c == ' ') {
+                length++;
+            } else if (c < 0x80) {
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 12;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 3;
+            } else {
+                length += 9;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param value 原始字串
+     * @param output 輸出, 需有 encodedLength(value) 的空間
+     * @param offset 輸出起點
+     * @return 輸出終點
+     */
+    public static int encode(String value, byte[] output, int offset) {
+        int position = offset;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                output[position++] = (byte) c;
+            } else if (c == ' ') {
+                output[position++] = '+';
+            } else if (c < 0x80) {
+                position = escape(c, output, position);
+            } else if (c < 0x800) {
+                position = escape(0xC0 | (c >> 6), output, position);
+                position = escape(0x80 | (c & 0x3F), output, position);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                position = escape(0xF0 | (codePoint >> 18), output, position);
+                position = escape(0x80 | ((codePoint >> 12) & 0x3F), output, position);
+                position = escape(0x80 | ((codePoint >> 6) & 0x3F), output, position);
+                position = escape(0x80 | (codePoint & 0x3F), output, position);
+            } else if (Character.isSurrogate(c)) {
+                // 與 String.getBytes(UTF_8) 相同, 不成對的 surrogate 以 ? 取代
+                position = escape('?', output, position);
+            } else {
+                position = escape(0xE0 | (c >> 12), output, position);
+                position = escape(0x80 | ((c >> 6) & 0x3F), output, position);
+                position = escape(0x80 | (c & 0x3F), output, position);
+            }
+        }
+        return position;
+    }
+
+    private static int escape(int b, byte[] output, int position) {
+        output[position] = '%';
+        output[position + 1] = HEX[(b >> 4) & 0xF];
+        output[position + 2] = HEX[b & 0xF];
+        return position + 3;
+    }
+
+    /**
+     * @param bodyMap 請求參數
+     * @return 編碼後的請求內容
+     */
+    public static byte[] encode(Map<String, String> bodyMap) {
+        int length = Math.max(0, bodyMap.size() * 2 - 1);
+        for (Map.Entry<String, String> entry : bodyMap.entrySet()) {
+            length += encodedLength(entry.getKey()) + encodedLength(entry.getValue());
+        }
+        byte[] body = new byte[length];
+        int position = 0;
+        boolean first = true;
+        for (Map.Entry<String, String> entry : bodyMap.entrySet()) {
+            if (!first) {
+                body[position++] = '&';
+            }
+            first = false;
+            position = encode(entry.getKey(), body, position);
+            body[position++] = '=';
+            position = encode(entry.getValue(), body, position);
+        }
+        return body;
+    }
+}
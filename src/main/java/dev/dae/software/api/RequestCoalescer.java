@@ -0,0 +1,193 @@
+package dev.dae.software.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合併進行中的相同查詢請求 (single-flight): 同一主機, PHPSESSID 與請求參數的查詢操作同時只送出一個 HTTP 請求, 回應分送給所有等待者
+ * <p>
+ * 只合併 {@link TenantOperation#isReadOnly()} 的操作, 其餘請求直接送出; 請求完成後即移除, 不保留回應, 需要保留時搭配 ResponseCache
+ *
+ * @author Ben
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<Key, CompletableFuture<HttpResponse<String>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * 送出請求的動作, 只在沒有相同請求進行中時執行
+     */
+    @FunctionalInterface
+    public interface Sender {
+
+        /**
+         * @return HTTP 回應, 可為 null
+         * @throws IOException 連線失敗或逾時
+         * @throws InterruptedException 等待回應時被中斷
+         */
+        HttpResponse<String> send() throws IOException, InterruptedException;
+    }
+
+    /**
+     * @param bodyMap 請求參數
+     * @return 是否可合併
+     */
+    public static boolean isCoalescible(Map<String, String> bodyMap) {
+        return operationOf(bodyMap).map(TenantOperation::isReadOnly).orElse(false);
+    }
+
+    /**
+     * 非同步送出; 有相同請求進行中時回傳該請求的結果, 取消回傳的 CompletableFuture 不影響其他等待者
+     *
+     * @param endpoint 房客 API 網址
+     * @param sessionId PHPSESSID
+     * @param bodyMap 請求參數
+     * @param sender 送出請求並回傳 CompletableFuture
+     * @return HTTP 回應的 CompletableFuture 物件
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(URI endpoint, String sessionId, Map<String, String> bodyMap, Supplier<CompletableFuture<HttpResponse<String>>> sender) {
+        if (!isCoalescible(bodyMap)) {
+            bypassed.increment();
+            return sender.get();
+        }
+        Key key = Key.of(endpoint, sessionId, bodyMap);
+        CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> existing = inFlight.putIfAbsent(key, future);
+        if (Objects.nonNull(existing)) {
+            coalesced.increment();
+            return existing.copy();
+        }
+        sent.increment();
+        try {
+            sender.get().whenComplete((response, throwable) -> complete(key, future, response, throwable));
+        } catch (RuntimeException ex) {
+            complete(key, future, null, ex);
+        }
+        return future.copy();
+    }
+
+    /**
+     * 同步送出; 沒有相同請求進行中時在呼叫端執行緒上執行 sender, 否則等待進行中的請求
+     *
+     * @param endpoint 房客 API 網址
+     * @param sessionId PHPSESSID
+     * @param bodyMap 請求參數
+     * @param sender 送出請求
+     * @return HTTP 回應, sender 回傳 null 時為 null
+     * @throws IOException 連線失敗或逾時; 執行請求的執行緒被中斷時, 等待者也以 IOException 失敗
+     * @throws InterruptedException 等待回應時被中斷
+     */
+    public HttpResponse<String> send(URI endpoint, String sessionId, Map<String, String> bodyMap, Sender sender) throws IOException, InterruptedException {
+        if (!isCoalescible(bodyMap)) {
+            bypassed.increment();
+            return sender.send();
+        }
+        Key key = Key.of(endpoint, sessionId, bodyMap);
+        CompletableFuture<HttpResponse<String>> future = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> existing = inFlight.putIfAbsent(key, future);
+        if (Objects.nonNull(existing)) {
+            coalesced.increment();
+            return await(existing);
+        }
+        sent.increment();
+        try {
+            HttpResponse<String> response = sender.send();
+            complete(key, future, response, null);
+            return response;
+        } catch (InterruptedException ex) {
+            complete(key, future, null, new IOException("coalesced request was interrupted", ex));
+            throw ex;
+        } catch (IOException | RuntimeException | Error ex) {
+            complete(key, future, null, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return 進行中的合併請求數
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return 實際送出的可合併請求數
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return 併入進行中請求, 未送出的請求數
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return 統計摘要
+     */
+    public String summary() {
+        long sentCount = getSent();
+        long coalescedCount = getCoalesced();
+        long total = sentCount + coalescedCount;
+        return String.format("single-flight: sent = %d, coalesced = %d (%.1f%%), bypassed = %d, in flight = %d",
+                sentCount, coalescedCount, total == 0 ? 0 : coalescedCount * 100.0 / total, bypassed.sum(), getInFlightCount());
+    }
+
+    private void complete(Key key, CompletableFuture<HttpResponse<String>> future, HttpResponse<String> response, Throwable throwable) {
+        // 先移除再完成, 完成之後才到的請求會重新送出
+        inFlight.remove(key, future);
+        if (Objects.isNull(throwable)) {
+            future.complete(response);
+        } else {
+            future.completeExceptionally(throwable instanceof CompletionException && Objects.nonNull(throwable.getCause()) ? throwable.getCause() : throwable);
+        }
+    }
+
+    private static HttpResponse<String> await(CompletableFuture<HttpResponse<String>> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static Optional<TenantOperation> operationOf(Map<String, String> bodyMap) {
+        String d = bodyMap.get("d");
+        return Objects.isNull(d) ? Optional.empty() : TenantOperation.of(d, bodyMap.get("m"));
+    }
+
+    private record Key(URI endpoint, String sessionId, Map<String, String> parameters) {
+
+        /**
+         * 複製請求參數; 值為 null 的參數以空字串送出, 與缺少該參數不同, 因此保留 (Map.copyOf 不接受 null)
+         */
+        static Key of(URI endpoint, String sessionId, Map<String, String> bodyMap) {
+            return new Key(endpoint, sessionId, Collections.unmodifiableMap(new HashMap<>(bodyMap)));
+        }
+    }
+}
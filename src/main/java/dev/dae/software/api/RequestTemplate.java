@@ -0,0 +1,165 @@
+package dev.dae.software.api;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 預先編譯的請求: 固定參數 (d, m, app-id, app-version, lang-code) 與標頭只編碼一次, 每次請求只編碼房客相關的參數並以 BodyPublishers.ofByteArray 送出
+ *
+ * @author Ben
+ */
+public class RequestTemplate {
+
+    /**
+     * 依房客而不同的參數與其取值方式, 其餘參數視為固定
+     */
+    private static final Map<String, Function<TenantProfile, String>> PROFILE_FIELDS = Map.of(
+            "username", TenantProfile::getUsername,
+            "password", TenantProfile::getPassword,
+            "user-code", TenantProfile::getUserCode,
+            "device-code", TenantProfile::getDeviceCode,
+            "channel-name", TenantProfile::getChannelName,
+            "refund-code", TenantProfile::getRefundCode,
+            "agree", profile -> profile.isAgree() ? "1" : "0");
+    private static final String COOKIE_PREFIX = "PHPSESSID=";
+    private final HttpRequest.Builder baseBuilder;
+    private final byte[] constantPart;
+    private final String[] variableNames;
+    private final byte[][] variablePrefixes;
+    private final List<Function<TenantProfile, String>> extractors;
+
+    /**
+     * @param endpoint 房客 API 的 URI
+     * @param timeout 請求逾時
+     * @param userAgent User-Agent 標頭
+     * @param constants 固定參數
+     * @param variableNames 每次請求依序提供值的參數名稱
+     */
+    public RequestTemplate(URI endpoint, Duration timeout, String userAgent, Map<String, String> constants, List<String> variableNames) {
+        this(endpoint, timeout, userAgent, constants, variableNames, null);
+    }
+
+    private RequestTemplate(URI endpoint, Duration timeout, String userAgent, Map<String, String> constants, List<String> variableNames,
+            List<Function<TenantProfile, String>> extractors) {
+        this.baseBuilder = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("User-Agent", userAgent);
+        this.constantPart = FormEncoder.encode(constants);
+        this.variableNames = variableNames.toArray(String[]::new);
+        this.variablePrefixes = new byte[this.variableNames.length][];
+        for (int i = 0; i < this.variableNames.length; i++) {
+            String separator = i == 0 && constantPart.length == 0 ? "" : "&";
+            byte[] name = FormEncoder.encode(Map.of(this.variableNames[i], ""));
+            byte[] prefix = new byte[separator.length() + name.length];
+            System.arraycopy(separator.getBytes(StandardCharsets.US_ASCII), 0, prefix, 0, separator.length());
+            System.arraycopy(name, 0, prefix, separator.length(), name.length);
+            variablePrefixes[i] = prefix;
+        }
+        this.extractors = extractors;
+    }
+
+    /**
+     * 由 TenantOperation.bodyMap 決定參數: 房客相關的參數每次請求由 TenantProfile 取值, 其餘以 defaults 的值固定
+     *
+     * @param endpoint 房客 API 的 URI
+     * @param timeout 請求逾時
+     * @param userAgent User-Agent 標頭
+     * @param operation 操作
+     * @param defaults 提供固定參數 (app-id, app-version, lang-code) 的房客參數
+     * @return RequestTemplate 物件
+     */
+    public static RequestTemplate of(URI endpoint, Duration timeout, String userAgent, TenantOperation operation, TenantProfile defaults) {
+        Map<String, String> constants = new LinkedHashMap<>();
+        List<String> variableNames = new ArrayList<>();
+        List<Function<TenantProfile, String>> extractors = new ArrayList<>();
+        constants.put("d", operation.getD());
+        if (Objects.nonNull(operation.getM())) {
+            constants.put("m", operation.getM());
+        }
+        operation.bodyMap(defaults).forEach((name, value) -> {
+            Function<TenantProfile, String> extractor = PROFILE_FIELDS.get(name);
+            if (Objects.nonNull(extractor)) {
+                variableNames.add(name);
+                extractors.add(extractor);
+            } else {
+                constants.putIfAbsent(name, value);
+            }
+        });
+        return new RequestTemplate(endpoint, timeout, userAgent, constants, variableNames, List.copyOf(extractors));
+    }
+
+    /**
+     * @return 每次請求依序提供值的參數名稱
+     */
+    public List<String> getVariableNames() {
+        return List.of(variableNames);
+    }
+
+    /**
+     * @param values 依 getVariableNames 順序的參數值
+     * @return 編碼後的請求內容
+     */
+    public byte[] encode(String... values) {
+        if (values.length != variableNames.length) {
+            throw new IllegalArgumentException(String.format("expect %d values, got %d", variableNames.length, values.length));
+        }
+        int length = constantPart.length;
+        for (int i = 0; i < values.length; i++) {
+            length += variablePrefixes[i].length + FormEncoder.encodedLength(Objects.requireNonNullElse(values[i], ""));
+        }
+        byte[] body = new byte[length];
+        System.arraycopy(constantPart, 0, body, 0, constantPart.length);
+        int position = constantPart.length;
+        for (int i = 0; i < values.length; i++) {
+            System.arraycopy(variablePrefixes[i], 0, body, position, variablePrefixes[i].length);
+            position = FormEncoder.encode(Objects.requireNonNullElse(values[i], ""), body, position + variablePrefixes[i].length);
+        }
+        return body;
+    }
+
+    /**
+     * @param profile 房客參數, 僅適用於 of(..., TenantOperation, ...) 建立的 RequestTemplate
+     * @return 編碼後的請求內容
+     */
+    public byte[] encode(TenantProfile profile) {
+        if (Objects.isNull(extractors)) {
+            throw new IllegalStateException("template is not bound to a TenantOperation");
+        }
+        String[] values = new String[extractors.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = extractors.get(i).apply(profile);
+        }
+        return encode(values);
+    }
+
+    /**
+     * @param profile 房客參數
+     * @param sessionId PHPSESSID, 空字串或 null 時不帶 Cookie
+     * @return HTTP 請求物件
+     */
+    public HttpRequest build(TenantProfile profile, String sessionId) {
+        return build(encode(profile), sessionId);
+    }
+
+    /**
+     * @param body 編碼後的請求內容
+     * @param sessionId PHPSESSID, 空字串或 null 時不帶 Cookie
+     * @return HTTP 請求物件
+     */
+    public HttpRequest build(byte[] body, String sessionId) {
+        HttpRequest.Builder requestBuilder = baseBuilder.copy().POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (Objects.nonNull(sessionId) && !sessionId.isBlank()) {
+            requestBuilder.header("Cookie", COOKIE_PREFIX.concat(sessionId));
+        }
+        return requestBuilder.build();
+    }
+}
@@ -0,0 +1,274 @@
+package dev.dae.software.api;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 唯讀房客操作的回應快取, 模擬 App 端的快取以量測可節省的後端請求
+ * <p>
+ * 以房客與請求參數 (不含密碼) 為鍵, 每個操作有各自的存活時間, 超過容量時淘汰最久未使用的項目. 同一房客的寫入操作 (綁定/解除綁定, 退費申請/取消, 退費同意) 與登出使受影響的讀取操作失效; 失效只遞增該房客該操作的世代編號, 舊項目在下次查詢時才移除. 查詢時記下世代編號, 寫入完成後才收到的讀取回應不會再被存入
+ *
+ * @author Ben
+ */
+public class ResponseCache {
+
+    /**
+     * 預設存活時間: 用電資料 30 秒, 綁定資料 5 分鐘, 報表 1 分鐘
+     */
+    public static final Map<TenantOperation, Duration> DEFAULT_TTLS = Map.of(
+            TenantOperation.DATA_CONSUMPTION, Duration.ofSeconds(30),
+            TenantOperation.DATA_CHANNELS_CONSUMPTION, Duration.ofSeconds(30),
+            TenantOperation.DATA_ROOM_CONSUMPTION, Duration.ofSeconds(30),
+            TenantOperation.DEVICE_BINDING_LIST, Duration.ofMinutes(5),
+            TenantOperation.DEVICE_BINDING_QUERY, Duration.ofMinutes(5),
+            TenantOperation.REFUND_REPORT, Duration.ofMinutes(1),
+            TenantOperation.CREDIT_REPORT, Duration.ofMinutes(1));
+    private static final Map<TenantOperation, Set<TenantOperation>> INVALIDATIONS = invalidations();
+    private final int maxEntries;
+    private final EnumMap<TenantOperation, Long> ttlNanos = new EnumMap<>(TenantOperation.class);
+    private final LinkedHashMap<Key, Entry> entries;
+    private final ConcurrentHashMap<String, AtomicLongArray> generations = new ConcurrentHashMap<>();
+    private final EnumMap<TenantOperation, LongAdder> hits = new EnumMap<>(TenantOperation.class);
+    private final EnumMap<TenantOperation, LongAdder> misses = new EnumMap<>(TenantOperation.class);
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param maxEntries 最多快取的回應數
+     */
+    public ResponseCache(int maxEntries) {
+        this(maxEntries, DEFAULT_TTLS);
+    }
+
+    /**
+     * @param maxEntries 最多快取的回應數
+     * @param ttls 各操作的存活時間, 未列出的操作不快取
+     */
+    public ResponseCache(int maxEntries, Map<TenantOperation, Duration> ttls) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        ttls.forEach((operation, ttl) -> {
+            if (!operation.isReadOnly()) {
+                throw new IllegalArgumentException(String.format("%s is not a read-only operation", operation));
+            }
+            if (!ttl.isNegative() && !ttl.isZero()) {
+                ttlNanos.put(operation, ttl.toNanos());
+            }
+        });
+        for (TenantOperation operation : ttlNanos.keySet()) {
+            hits.put(operation, new LongAdder());
+            misses.put(operation, new LongAdder());
+        }
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > ResponseCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param operation 操作
+     * @return 是否快取此操作的回應
+     */
+    public boolean isCacheable(TenantOperation operation) {
+        return ttlNanos.containsKey(operation);
+    }
+
+    /**
+     * @param operation 操作
+     * @return 此操作是否會使快取失效
+     */
+    public static boolean isInvalidating(TenantOperation operation) {
+        return INVALIDATIONS.containsKey(operation);
+    }
+
+    /**
+     * 查詢快取; 未命中時送出請求, 再以 {@link #store(Lookup, HttpResponse)} 存入回應
+     *
+     * @param tenant 房客識別, 通常為 username; 同時對多個後端送出請求時應加上主機
+     * @param operation 操作, 須為 {@link #isCacheable(TenantOperation)}
+     * @param bodyMap 請求參數
+     * @return 查詢結果
+     */
+    public Lookup lookup(String tenant, TenantOperation operation, Map<String, String> bodyMap) {
+        if (!isCacheable(operation)) {
+            throw new IllegalArgumentException(String.format("%s is not cacheable", operation));
+        }
+        HashMap<String, String> parameters = new HashMap<>(bodyMap);
+        parameters.remove("password");
+        Key key = new Key(tenant, operation, Collections.unmodifiableMap(parameters));
+        long generation = generations(tenant).get(operation.ordinal());
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (Objects.nonNull(entry) && (entry.generation() != generation || now - entry.storedAt() >= ttlNanos.get(operation))) {
+                entries.remove(key);
+                expired.increment();
+                entry = null;
+            }
+        }
+        if (Objects.isNull(entry)) {
+            misses.get(operation).increment();
+            return new Lookup(key, generation, null);
+        }
+        hits.get(operation).increment();
+        return new Lookup(key, generation, entry.response());
+    }
+
+    /**
+     * 存入成功的回應; HTTP 錯誤, result 為 false, 或查詢之後房客已執行寫入操作時不存入
+     *
+     * @param lookup 未命中的查詢結果
+     * @param response 回應
+     */
+    public void store(Lookup lookup, HttpResponse<String> response) {
+        if (response.statusCode() >= 400 || !ApiResponse.readResult(response.body())) {
+            return;
+        }
+        Key key = lookup.key;
+        if (generations(key.tenant()).get(key.operation().ordinal()) != lookup.generation) {
+            rejected.increment();
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(response, System.nanoTime(), lookup.generation));
+        }
+    }
+
+    /**
+     * 房客送出寫入操作或登出後呼叫, 不論成功與否; 其他操作不影響快取
+     *
+     * @param tenant 房客識別, 與 {@link #lookup(String, TenantOperation, Map)} 相同
+     * @param operation 已送出的操作
+     */
+    public void invalidate(String tenant, TenantOperation operation) {
+        Set<TenantOperation> affected = INVALIDATIONS.get(operation);
+        if (Objects.isNull(affected)) {
+            return;
+        }
+        AtomicLongArray tenantGenerations = generations(tenant);
+        affected.forEach(read -> tenantGenerations.incrementAndGet(read.ordinal()));
+        invalidations.increment();
+    }
+
+    /**
+     * 清除所有項目, 統計數字不變
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        generations.clear();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public long getMisses() {
+        return misses.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @return 命中比例, 即可節省的後端讀取請求比例
+     */
+    public double getHitRatio() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return 統計摘要
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("response cache: entries = %d/%d, hits = %d, misses = %d, hit ratio = %.1f%%, expired = %d, evictions = %d, invalidations = %d, rejected = %d%n",
+                size(), maxEntries, getHits(), getMisses(), getHitRatio() * 100, expired.sum(), evictions.sum(), invalidations.sum(), rejected.sum()));
+        hits.forEach((operation, hitCount) -> {
+            long missCount = misses.get(operation).sum();
+            if (hitCount.sum() + missCount > 0) {
+                builder.append(String.format("  %-28s hits = %d, misses = %d%n", operation.getKey(), hitCount.sum(), missCount));
+            }
+        });
+        return builder.toString();
+    }
+
+    private AtomicLongArray generations(String tenant) {
+        return generations.computeIfAbsent(tenant, key -> new AtomicLongArray(TenantOperation.values().length));
+    }
+
+    private static Map<TenantOperation, Set<TenantOperation>> invalidations() {
+        EnumMap<TenantOperation, Set<TenantOperation>> map = new EnumMap<>(TenantOperation.class);
+        Set<TenantOperation> binding = EnumSet.of(TenantOperation.DEVICE_BINDING_LIST, TenantOperation.DEVICE_BINDING_QUERY,
+                TenantOperation.DATA_CONSUMPTION, TenantOperation.DATA_CHANNELS_CONSUMPTION, TenantOperation.DATA_ROOM_CONSUMPTION);
+        Set<TenantOperation> refund = EnumSet.of(TenantOperation.REFUND_REPORT, TenantOperation.CREDIT_REPORT);
+        map.put(TenantOperation.DEVICE_BINDING_BIND, binding);
+        map.put(TenantOperation.DEVICE_BINDING_UNBIND, binding);
+        map.put(TenantOperation.REFUND_ISSUE_NEW, refund);
+        map.put(TenantOperation.REFUND_ISSUE_CANCEL, refund);
+        map.put(TenantOperation.REFUND_AGREE, refund);
+        map.put(TenantOperation.LOGOUT, EnumSet.allOf(TenantOperation.class));
+        return map;
+    }
+
+    /**
+     * 快取查詢結果
+     */
+    public static final class Lookup {
+
+        private final Key key;
+        private final long generation;
+        private final HttpResponse<String> response;
+
+        private Lookup(Key key, long generation, HttpResponse<String> response) {
+            this.key = key;
+            this.generation = generation;
+            this.response = response;
+        }
+
+        public boolean isHit() {
+            return Objects.nonNull(response);
+        }
+
+        /**
+         * @return 快取的回應, 未命中時為 null
+         */
+        public HttpResponse<String> getResponse() {
+            return response;
+        }
+    }
+
+    private record Key(String tenant, TenantOperation operation, Map<String, String> parameters) {
+    }
+
+    private record Entry(HttpResponse<String> response, long storedAt, long generation) {
+    }
+}
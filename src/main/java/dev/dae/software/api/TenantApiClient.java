@@ -0,0 +1,154 @@
+package dev.dae.software.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 房客 API (/ws/app.php) 的 HTTP 請求建立與傳送, 不依賴 Swing 元件
+ *
+ * @author Ben
+ */
+public class TenantApiClient {
+
+    public static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:94.0) Gecko/20100101 Firefox/94.0";
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(3);
+    private final HttpClient client;
+    private final URI endpoint;
+    private final Duration requestTimeout;
+    private final String userAgent;
+    private final ConcurrentHashMap<TemplateKey, RequestTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * client 為 TransportClient 時使用其 TransportProfile 的請求逾時與 User-Agent, 否則使用 REQUEST_TIMEOUT 與 USER_AGENT
+     *
+     * @param client HttpClient 物件
+     * @param endpoint 房客 API 的 URI
+     */
+    public TenantApiClient(HttpClient client, URI endpoint) {
+        this(client, endpoint,
+                client instanceof TransportClient transport ? transport.getProfile().requestTimeout() : REQUEST_TIMEOUT,
+                client instanceof TransportClient transport ? transport.getProfile().userAgent() : USER_AGENT);
+    }
+
+    /**
+     * @param client HttpClient 物件
+     * @param endpoint 房客 API 的 URI
+     * @param requestTimeout 請求逾時
+     * @param userAgent User-Agent 標頭
+     */
+    public TenantApiClient(HttpClient client, URI endpoint, Duration requestTimeout, String userAgent) {
+        this.client = Objects.requireNonNull(client);
+        this.endpoint = Objects.requireNonNull(endpoint);
+        this.requestTimeout = Objects.requireNonNull(requestTimeout);
+        this.userAgent = Objects.requireNonNull(userAgent);
+    }
+
+    /**
+     * @param protocol http 或 https
+     * @param host 主機名稱
+     * @param path API 路徑
+     * @return 房客 API 的 URI
+     */
+    public static URI endpoint(String protocol, String host, String path) {
+        return URI.create(String.format("%s://%s%s", protocol, host, path));
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    public URI getEndpoint() {
+        return endpoint;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param bodyMap 請求參數
+     * @param sessionId PHPSESSID, 空字串或 null 時不帶 Cookie
+     * @return HTTP 請求物件
+     */
+    public HttpRequest buildRequest(Map<String, String> bodyMap, String sessionId) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(endpoint)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("User-Agent", userAgent)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(FormEncoder.encode(bodyMap)));
+        if (Objects.nonNull(sessionId) && !sessionId.isBlank()) {
+            requestBuilder.header("Cookie", String.format("PHPSESSID=%s", sessionId));
+        }
+        return requestBuilder.build();
+    }
+
+    /**
+     * @param operation 操作
+     * @param profile 房客參數, 其 app-id, app-version, lang-code 為固定參數
+     * @return 該操作的預先編譯請求, 相同的固定參數共用同一個 RequestTemplate
+     */
+    public RequestTemplate template(TenantOperation operation, TenantProfile profile) {
+        TemplateKey key = new TemplateKey(operation, profile.getAppId(), profile.getAppVersion(), profile.getLangCode());
+        RequestTemplate template = templates.get(key);
+        return Objects.nonNull(template) ? template : templates.computeIfAbsent(key, k -> RequestTemplate.of(endpoint, requestTimeout, userAgent, operation, profile));
+    }
+
+    /**
+     * 執行房客 API 之 HTTP 請求
+     *
+     * @param bodyMap 請求參數
+     * @param sessionId PHPSESSID
+     * @return HTTP 請求後的 Response 物件之 Optional 物件, 連線失敗時為 empty
+     */
+    public Optional<HttpResponse<String>> doRequest(Map<String, String> bodyMap, String sessionId) {
+        HttpResponse<String> response = null;
+        try {
+            response = client.send(buildRequest(bodyMap, sessionId), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException | InterruptedException ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            System.err.printf("%tY/%<tm/%<td %<tp %<tI:%<tM:%<tS - %s throws %s: %s%n", System.currentTimeMillis(), TenantApiClient.class.getName(), ex.getClass().getName(), ex.getMessage());
+        }
+        return Optional.ofNullable(response);
+    }
+
+    /**
+     * @param response HTTP 回應物件
+     * @return Set-Cookie 標頭
+     */
+    public static Optional<String> setCookie(HttpResponse<?> response) {
+        return response.headers().firstValue("set-cookie");
+    }
+
+    /**
+     * @param setCookie Set-Cookie 標頭, 例如 PHPSESSID=abc; Max-Age=1440; path=/
+     * @return 屬性名稱對應值, 無值的屬性 (HttpOnly) 對應空字串
+     */
+    public static Map<String, String> parseSetCookie(String setCookie) {
+        Map<String, String> map = new HashMap<>();
+        if (Objects.nonNull(setCookie)) {
+            for (String attribute : setCookie.split(";\\s?")) {
+                int index = attribute.indexOf('=');
+                if (index < 0) {
+                    map.put(attribute.trim(), "");
+                } else {
+                    map.put(attribute.substring(0, index).trim(), attribute.substring(index + 1).trim());
+                }
+            }
+        }
+        return map;
+    }
+
+    private record TemplateKey(TenantOperation operation, String appId, String appVersion, String langCode) {
+    }
+}
@@ -0,0 +1,121 @@
+package dev.dae.software.api;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 房客 API 的服務 (d) 與操作類型 (m), 請求參數與 MainFrame 各頁籤相同
+ *
+ * @author Ben
+ */
+public enum TenantOperation {
+    LOGIN("login", null),
+    LOGOUT("logout", null),
+    DATA_CONSUMPTION("data", "consumption"),
+    DATA_CHANNELS_CONSUMPTION("data", "channels-consumption"),
+    DATA_ROOM_CONSUMPTION("data", "room-consumption"),
+    DEVICE_BINDING_LIST("device-binding", "list"),
+    DEVICE_BINDING_BIND("device-binding", "bind"),
+    DEVICE_BINDING_UNBIND("device-binding", "unbind"),
+    DEVICE_BINDING_QUERY("device-binding", "query"),
+    REFUND_REPORT("refund-report", null),
+    CREDIT_REPORT("credit-report", null),
+    REFUND_ISSUE_LIST("refund-issue", "list"),
+    REFUND_ISSUE_NEW("refund-issue", "new"),
+    REFUND_ISSUE_CANCEL("refund-issue", "cancel"),
+    REFUND_AGREE("refund-agree", null);
+
+    private final String d;
+    private final String m;
+    private final String key;
+
+    private TenantOperation(String d, String m) {
+        this.d = d;
+        this.m = m;
+        this.key = Objects.isNull(m) ? d : String.format("%s/%s", d, m);
+    }
+
+    public String getD() {
+        return d;
+    }
+
+    public String getM() {
+        return m;
+    }
+
+    /**
+     * @return d/m 形式的操作名稱, 無操作類型時為 d
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return 是否為不改變後端資料與登入狀態的查詢操作
+     */
+    public boolean isReadOnly() {
+        return switch (this) {
+            case LOGIN, LOGOUT, DEVICE_BINDING_BIND, DEVICE_BINDING_UNBIND, REFUND_ISSUE_NEW, REFUND_ISSUE_CANCEL, REFUND_AGREE ->
+                false;
+            default ->
+                true;
+        };
+    }
+
+    /**
+     * @param key d/m 或 d 形式的操作名稱
+     * @return 對應的 TenantOperation
+     */
+    public static Optional<TenantOperation> ofKey(String key) {
+        return Arrays.stream(values()).filter(operation -> operation.key.equals(key)).findFirst();
+    }
+
+    /**
+     * @param d 服務
+     * @param m 操作類型, 可為 null
+     * @return 對應的 TenantOperation
+     */
+    public static Optional<TenantOperation> of(String d, String m) {
+        return Arrays.stream(values()).filter(operation -> operation.d.equals(d) && Objects.equals(operation.m, m)).findFirst();
+    }
+
+    /**
+     * @param profile 房客參數
+     * @return 請求參數
+     */
+    public HashMap<String, String> bodyMap(TenantProfile profile) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("d", d);
+        if (Objects.nonNull(m)) {
+            map.put("m", m);
+        }
+        map.put("username", profile.getUsername());
+        switch (this) {
+            case LOGIN -> {
+                map.put("password", profile.getPassword());
+                map.put("user-code", profile.getUserCode());
+                map.put("app-id", profile.getAppId());
+                map.put("app-version", profile.getAppVersion());
+                map.put("lang-code", profile.getLangCode());
+            }
+            case DEVICE_BINDING_QUERY ->
+                map.put("channel-name", profile.getChannelName());
+            case DEVICE_BINDING_BIND, DEVICE_BINDING_UNBIND, REFUND_ISSUE_LIST, REFUND_ISSUE_NEW, REFUND_ISSUE_CANCEL ->
+                map.put("device-code", profile.getDeviceCode());
+            case REFUND_AGREE -> {
+                map.put("refund-code", profile.getRefundCode());
+                map.put("agree", profile.isAgree() ? "1" : "0");
+            }
+            default -> {
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,109 @@
+package dev.dae.software.api;
+
+/**
+ * 模擬房客的登入資料與各服務使用的參數
+ *
+ * @author Ben
+ */
+public class TenantProfile {
+
+    private String username = "";
+    private String password = "";
+    private String userCode = "";
+    private String appId = "com.dae.TenantAppPub";
+    private String appVersion = "1.2.6";
+    private String langCode = "zh-TW";
+    private String deviceCode = "";
+    private String channelName = "";
+    private String refundCode = "";
+    private boolean agree;
+
+    public TenantProfile() {
+    }
+
+    public TenantProfile(String username, String password, String userCode) {
+        this.username = username;
+        this.password = password;
+        this.userCode = userCode;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getUserCode() {
+        return userCode;
+    }
+
+    public void setUserCode(String userCode) {
+        this.userCode = userCode;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public void setAppId(String appId) {
+        this.appId = appId;
+    }
+
+    public String getAppVersion() {
+        return appVersion;
+    }
+
+    public void setAppVersion(String appVersion) {
+        this.appVersion = appVersion;
+    }
+
+    public String getLangCode() {
+        return langCode;
+    }
+
+    public void setLangCode(String langCode) {
+        this.langCode = langCode;
+    }
+
+    public String getDeviceCode() {
+        return deviceCode;
+    }
+
+    public void setDeviceCode(String deviceCode) {
+        this.deviceCode = deviceCode;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public void setChannelName(String channelName) {
+        this.channelName = channelName;
+    }
+
+    public String getRefundCode() {
+        return refundCode;
+    }
+
+    public void setRefundCode(String refundCode) {
+        this.refundCode = refundCode;
+    }
+
+    public boolean isAgree() {
+        return agree;
+    }
+
+    public void setAgree(boolean agree) {
+        this.agree = agree;
+    }
+}
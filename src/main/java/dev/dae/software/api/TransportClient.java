@@ -0,0 +1,286 @@
+package dev.dae.software.api;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * 依 TransportProfile 建立的 HttpClient, 統計請求數, 回應的 HTTP 版本與新建立的 TLS 連線
+ * <p>
+ * HttpClient 每建立一條 TLS 連線會向 SSLContext 取得一個 SSLEngine, 因此以包裝的 SSLContext 計算新連線; 其餘請求即為重用既有連線. 明文 http 無法由公開 API 觀察連線, 只統計請求與版本
+ *
+ * @author Ben
+ */
+public class TransportClient extends HttpClient {
+
+    private final TransportProfile profile;
+    private final HttpClient delegate;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder secureRequests = new LongAdder();
+    private final EnumMap<HttpClient.Version, LongAdder> responsesByVersion = new EnumMap<>(HttpClient.Version.class);
+    private final ConcurrentHashMap<String, LongAdder> tlsConnections = new ConcurrentHashMap<>();
+
+    TransportClient(TransportProfile profile) {
+        this.profile = profile;
+        for (HttpClient.Version version : HttpClient.Version.values()) {
+            responsesByVersion.put(version, new LongAdder());
+        }
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(profile.version())
+                .connectTimeout(profile.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        Executor executor = profile.newExecutor();
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        try {
+            builder.sslContext(new CountingSSLContext(SSLContext.getDefault()));
+        } catch (NoSuchAlgorithmException ex) {
+            // 沒有預設 SSLContext 時不統計 TLS 連線
+        }
+        this.delegate = builder.build();
+    }
+
+    public TransportProfile getProfile() {
+        return profile;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return 連線失敗或逾時的請求數
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @param version HTTP 版本
+     * @return 以該版本完成的回應數
+     */
+    public long getResponses(HttpClient.Version version) {
+        return responsesByVersion.get(version).sum();
+    }
+
+    /**
+     * @return 新建立的 TLS 連線數
+     */
+    public long getNewTlsConnections() {
+        return tlsConnections.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @return https 請求中重用既有連線的比例
+     */
+    public double getTlsReuseRatio() {
+        long secure = secureRequests.sum();
+        return secure == 0 ? 0 : Math.max(0, secure - getNewTlsConnections()) / (double) secure;
+    }
+
+    /**
+     * @return 各主機新建立的 TLS 連線數
+     */
+    public Map<String, Long> getTlsConnectionsByHost() {
+        Map<String, Long> map = new TreeMap<>();
+        tlsConnections.forEach((host, count) -> map.put(host, count.sum()));
+        return map;
+    }
+
+    /**
+     * @return 傳輸統計摘要
+     */
+    public String summary() {
+        return String.format("transport %s: requests = %d, failures = %d, HTTP/1.1 = %d, HTTP/2 = %d, https = %d, new TLS connections = %d (reuse %.1f%%) %s",
+                profile, getRequests(), getFailures(), getResponses(HttpClient.Version.HTTP_1_1), getResponses(HttpClient.Version.HTTP_2),
+                secureRequests.sum(), getNewTlsConnections(), getTlsReuseRatio() * 100, getTlsConnectionsByHost());
+    }
+
+    private void count(HttpRequest request) {
+        requests.increment();
+        if ("https".equalsIgnoreCase(request.uri().getScheme())) {
+            secureRequests.increment();
+        }
+    }
+
+    private void count(HttpResponse<?> response, Throwable throwable) {
+        if (throwable == null) {
+            responsesByVersion.get(response.version()).increment();
+        } else {
+            failures.increment();
+        }
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException, InterruptedException {
+        count(request);
+        try {
+            HttpResponse<T> response = delegate.send(request, responseBodyHandler);
+            count(response, null);
+            return response;
+        } catch (IOException ex) {
+            count(null, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+        count(request);
+        CompletableFuture<HttpResponse<T>> future = delegate.sendAsync(request, responseBodyHandler);
+        future.whenComplete(this::count);
+        return future;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler, HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        count(request);
+        CompletableFuture<HttpResponse<T>> future = delegate.sendAsync(request, responseBodyHandler, pushPromiseHandler);
+        future.whenComplete(this::count);
+        return future;
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+
+    @Override
+    public WebSocket.Builder newWebSocketBuilder() {
+        return delegate.newWebSocketBuilder();
+    }
+
+    /**
+     * 委派給已初始化的 SSLContext, 並在建立 SSLEngine 時計數
+     */
+    private class CountingSSLContext extends SSLContext {
+
+        CountingSSLContext(SSLContext context) {
+            super(new CountingSpi(context), context.getProvider(), context.getProtocol());
+        }
+    }
+
+    private class CountingSpi extends SSLContextSpi {
+
+        private final SSLContext context;
+
+        CountingSpi(SSLContext context) {
+            this.context = context;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+            context.init(km, tm, sr);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return context.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return context.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            tlsConnections.computeIfAbsent("", host -> new LongAdder()).increment();
+            return context.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            tlsConnections.computeIfAbsent(String.format("%s:%d", host, port), key -> new LongAdder()).increment();
+            return context.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return context.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return context.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return context.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return context.getSupportedSSLParameters();
+        }
+    }
+}
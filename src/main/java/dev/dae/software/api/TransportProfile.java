@@ -0,0 +1,139 @@
+package dev.dae.software.api;
+
+import dev.dae.software.util.HostEnvironment;
+import dev.dae.software.util.ThreadPools;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * HttpClient 的傳輸設定: HTTP 版本, 執行緒, 連線與請求逾時及 User-Agent
+ *
+ * @param version HTTP/1.1 或 HTTP/2 (https 以 ALPN 協商, http 以 Upgrade 嘗試)
+ * @param executorType HttpClient 的執行緒類型
+ * @param threads FIXED 時的執行緒數量
+ * @param connectTimeout 連線逾時
+ * @param requestTimeout 請求逾時
+ * @param userAgent User-Agent 標頭
+ * @author Ben
+ */
+public record TransportProfile(HttpClient.Version version, ExecutorType executorType, int threads, Duration connectTimeout, Duration requestTimeout, String userAgent) {
+
+    /**
+     * 與原本 MainFrame 的 HttpClient 相同的設定
+     */
+    public static final TransportProfile DEFAULT = new TransportProfile(HttpClient.Version.HTTP_2, ExecutorType.DEFAULT, 0, Duration.ofSeconds(3),
+            TenantApiClient.REQUEST_TIMEOUT, TenantApiClient.USER_AGENT);
+
+    public TransportProfile {
+        Objects.requireNonNull(version);
+        Objects.requireNonNull(executorType);
+        Objects.requireNonNull(connectTimeout);
+        Objects.requireNonNull(requestTimeout);
+        Objects.requireNonNull(userAgent);
+        if (executorType == ExecutorType.FIXED && threads <= 0) {
+            throw new IllegalArgumentException("fixed executor needs a positive thread count");
+        }
+    }
+
+    /**
+     * @param environment 主機環境
+     * @return 使用該環境逾時設定的 TransportProfile
+     */
+    public TransportProfile withEnvironment(HostEnvironment environment) {
+        return new TransportProfile(version, executorType, threads, environment.getConnectTimeout(), environment.getRequestTimeout(), userAgent);
+    }
+
+    /**
+     * 解析以逗號分隔的設定, 未指定的項目沿用 DEFAULT, 例如 "h1,fixed:8" 或 "h2,virtual"
+     * <ul>
+     * <li>h1, http/1.1 / h2, http/2</li>
+     * <li>default / virtual / fixed:執行緒數量</li>
+     * <li>connect=秒數 / timeout=秒數</li>
+     * </ul>
+     *
+     * @param spec 設定字串
+     * @return TransportProfile 物件
+     */
+    public static TransportProfile parse(String spec) {
+        HttpClient.Version version = DEFAULT.version;
+        ExecutorType executorType = DEFAULT.executorType;
+        int threads = DEFAULT.threads;
+        Duration connectTimeout = DEFAULT.connectTimeout;
+        Duration requestTimeout = DEFAULT.requestTimeout;
+        for (String token : spec.toLowerCase(Locale.ROOT).split(",")) {
+            String item = token.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            switch (item) {
+                case "h1", "http/1.1", "http1.1" ->
+                    version = HttpClient.Version.HTTP_1_1;
+                case "h2", "http/2", "http2" ->
+                    version = HttpClient.Version.HTTP_2;
+                case "default" ->
+                    executorType = ExecutorType.DEFAULT;
+                case "virtual" ->
+                    executorType = ExecutorType.VIRTUAL;
+                default -> {
+                    if (item.startsWith("fixed:")) {
+                        executorType = ExecutorType.FIXED;
+                        threads = Integer.parseInt(item.substring("fixed:".length()));
+                    } else if (item.startsWith("connect=")) {
+                        connectTimeout = Duration.ofMillis((long) (Double.parseDouble(item.substring("connect=".length())) * 1000));
+                    } else if (item.startsWith("timeout=")) {
+                        requestTimeout = Duration.ofMillis((long) (Double.parseDouble(item.substring("timeout=".length())) * 1000));
+                    } else {
+                        throw new IllegalArgumentException(String.format("unknown transport option: %s", item));
+                    }
+                }
+            }
+        }
+        return new TransportProfile(version, executorType, threads, connectTimeout, requestTimeout, DEFAULT.userAgent);
+    }
+
+    /**
+     * @return 依此設定建立並計算連線統計的 HttpClient
+     */
+    public TransportClient newClient() {
+        return new TransportClient(this);
+    }
+
+    Executor newExecutor() {
+        return switch (executorType) {
+            case VIRTUAL ->
+                ThreadPools.newPerTaskExecutor("http-client");
+            case FIXED ->
+                Executors.newFixedThreadPool(threads, ThreadPools.daemonThreadFactory("http-client"));
+            case DEFAULT ->
+                null;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %s executor, connect %d ms, timeout %d ms", version == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1",
+                executorType == ExecutorType.FIXED ? "fixed:" + threads : executorType.name().toLowerCase(Locale.ROOT), connectTimeout.toMillis(), requestTimeout.toMillis());
+    }
+
+    /**
+     * HttpClient 的執行緒類型
+     */
+    public enum ExecutorType {
+        /**
+         * HttpClient 內建的 cached thread pool
+         */
+        DEFAULT,
+        /**
+         * 每個工作一條虛擬執行緒, 不支援時為 daemon cached thread pool
+         */
+        VIRTUAL,
+        /**
+         * 固定數量的執行緒
+         */
+        FIXED
+    }
+}
@@ -1,44 +1,69 @@
 package dev.dae.software.app;
 
+import dev.dae.software.api.ApiResponse;
+import dev.dae.software.api.AsyncRequestPipeline;
+import dev.dae.software.api.RequestCoalescer;
+import dev.dae.software.api.ResponseCache;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.api.TenantProfile;
+import dev.dae.software.api.TransportClient;
+import dev.dae.software.api.TransportProfile;
+import dev.dae.software.journal.SessionJournal;
+import dev.dae.software.load.FanOutReport;
+import dev.dae.software.load.FanOutSweep;
+import dev.dae.software.metrics.LatencyHistogram;
+import dev.dae.software.metrics.OperationLatencies;
+import dev.dae.software.session.SessionPool;
+import dev.dae.software.session.SessionRefresher;
+import dev.dae.software.mqtt.MeterSubscriber;
+import dev.dae.software.mqtt.MqttSettings;
+import dev.dae.software.mqtt.TenantChannels;
+import dev.dae.software.report.ReportExporter;
+import dev.dae.software.session.TenantSession;
+import dev.dae.software.util.ConfigPersister;
+import dev.dae.software.util.CryptoAES;
+import dev.dae.software.util.HostEnvironment;
+import dev.dae.software.util.StartupProfile;
+import dev.dae.software.util.StatusLog;
+import dev.dae.software.util.ThreadPools;
 import jakarta.json.Json;
-import jakarta.json.JsonArray;
 import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
-import jakarta.json.JsonReader;
 import java.awt.Font;
 import java.awt.FontFormatException;
-import java.awt.GraphicsEnvironment;
+import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.net.http.HttpClient;
-import java.net.http.HttpHeaders;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+import javax.swing.JFileChooser;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 /**
  * @see https://golb.hplar.ch/2019/08/json-p.html
@@ -47,124 +72,479 @@ import org.json.JSONObject;
 public class MainFrame extends javax.swing.JFrame {
 
     private static final Path CONFIG_PATH = Paths.get(System.getProperty("user.home"), ".tenant-api.json");
+    private static final Path STATUS_LOG_PATH = Paths.get(System.getProperty("user.home"), ".tenant-api-status.log");
+    private static final Path JOURNAL_DIRECTORY = Paths.get(System.getProperty("user.home"), ".tenant-api-journal");
     private static final String CIPHER_METHOD = "AES/CBC/PKCS7Padding";
-    private final HttpClient client = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(3))
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
+    private static final String[] LOGIN_DATA_FIELDS = {"mqtt", "channels"};
+    /**
+     * 傳輸設定, 可由 -Dtenant.transport=h1,fixed:8 等指定, 逾時依主機環境而定
+     */
+    private static final TransportProfile TRANSPORT_PROFILE = TransportProfile.parse(System.getProperty("tenant.transport", ""));
+    private static final StartupProfile STARTUP = new StartupProfile();
+    private static final ExecutorService STARTUP_EXECUTOR = ThreadPools.newPerTaskExecutor("startup");
+    /**
+     * 預設的 TransportClient; 建立 SSLContext 與 HttpClient 需數百毫秒, 在背景與視窗建立同時進行
+     */
+    private static final CompletableFuture<TransportClient> DEFAULT_TRANSPORT = CompletableFuture.supplyAsync(() -> STARTUP.time("http client", TRANSPORT_PROFILE::newClient), STARTUP_EXECUTOR);
+    private static final CompletableFuture<Optional<JsonObject>> INITIAL_CONFIG = CompletableFuture.supplyAsync(() -> STARTUP.time("config", () -> ConfigPersister.read(CONFIG_PATH)), STARTUP_EXECUTOR);
+    private static final CompletableFuture<Void> CRYPTO_PROVIDER = CompletableFuture.runAsync(() -> STARTUP.time("crypto provider", () -> CryptoAES.preload(CIPHER_METHOD)), STARTUP_EXECUTOR);
+    /**
+     * 各主機環境的 TransportClient, 在 STARTUP_EXECUTOR 上建立, 只在 EDT 上存取
+     */
+    private final EnumMap<HostEnvironment, CompletableFuture<TransportClient>> transports = new EnumMap<>(HostEnvironment.class);
+    private final Map<TransportClient, Long> reportedTransportRequests = new HashMap<>();
+    private AsyncRequestPipeline requestPipeline;
+    private CompletableFuture<Optional<Font>> statusFont;
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+    private long reportedCoalesced;
+    private final OperationLatencies latencies = new OperationLatencies();
+    /**
+     * 唯讀操作的回應快取, 以 -Dtenant.cache=1024 指定容量啟用, 預設不快取
+     */
+    private final ResponseCache responseCache = Integer.getInteger("tenant.cache", 0) > 0 ? new ResponseCache(Integer.getInteger("tenant.cache")) : null;
+    private long reportedCacheLookups;
     private final JsonObject defaultCconfigObject = Json.createObjectBuilder()
             .add("session", Json.createObjectBuilder()
                     .add("session-id", "")
                     .add("updated-at", "")
                     .add("expired-at", 0))
             .build();
-    private final MqttConnectOptions mqttConnectionOptions = new MqttConnectOptions();
     private MqttClient mqttClient;
-    private JsonObject configObject;
-    private JsonObject sessionObject;
-    private JsonObject loginDataObject;
-    private JsonObject mqttObject;
-    private JsonObject channelsObject;
-    private String topicPrefix;
-    private String keySeed;
+    private MeterSubscriber meterSubscriber;
+    private final StatusLog statusLog = new StatusLog(2000, STATUS_LOG_PATH, 8 << 20, 5);
+    private final StatusLogView statusLogView;
+    private final SessionJournal journal = new SessionJournal(JOURNAL_DIRECTORY.resolve(String.format("%tY%<tm%<td-%<tH%<tM%<tS.ndjson", System.currentTimeMillis())));
+    private volatile String lastMeterMessage = "";
+    private final SessionPool sessionPool = new SessionPool();
+    private final SessionRefresher sessionRefresher = new SessionRefresher(this::refreshSession, 0.75, 0.9);
+    private volatile LoginRequest lastLogin;
+    private final ConfigPersister configPersister = new ConfigPersister(CONFIG_PATH, Duration.ofSeconds(5));
+    private JsonObject configObject = defaultCconfigObject;
     private int tenantId;
 
+    /**
+     * 在背景決定狀態欄字型, 完成後在 EDT 上套用
+     */
     private void setTextAreaDefaultFont() {
-        if (Arrays.stream(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames(Locale.TRADITIONAL_CHINESE)).anyMatch(s -> s.equals("Microsoft YaHei Mono"))) {
-            jtaStatus.setFont(new java.awt.Font("Microsoft YaHei Mono", 0, 12));
-        } else {
-            try {
-                Font font = Font.createFont(Font.TRUETYPE_FONT, MainFrame.class.getResourceAsStream("/META-INF/MicrosoftYaHeiMono-CP950.ttf"));
-                jtaStatus.setFont(font.deriveFont(12f));
-            } catch (FontFormatException | IOException ex) {
-                Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+        statusFont = CompletableFuture.supplyAsync(() -> STARTUP.time("status font", MainFrame::resolveStatusFont), STARTUP_EXECUTOR);
+        statusFont.thenAccept(font -> font.ifPresent(f -> SwingUtilities.invokeLater(() -> jtaStatus.setFont(f))));
+    }
+
+    /**
+     * 已安裝 Microsoft YaHei Mono 時直接使用, 否則載入內附的字型檔; 以字型名稱建立 Font 判斷是否安裝, 不列舉系統所有字型
+     *
+     * @return 狀態欄字型, 都無法取得時為空
+     */
+    private static Optional<Font> resolveStatusFont() {
+        Font installed = new Font("Microsoft YaHei Mono", Font.PLAIN, 12);
+        if ("Microsoft YaHei Mono".equals(installed.getFamily(Locale.TRADITIONAL_CHINESE))) {
+            return Optional.of(installed);
+        }
+        try (InputStream input = MainFrame.class.getResourceAsStream("/META-INF/MicrosoftYaHeiMono-CP950.ttf")) {
+            if (Objects.isNull(input)) {
+                return Optional.empty();
             }
+            return Optional.of(Font.createFont(Font.TRUETYPE_FONT, input).deriveFont(12f));
+        } catch (FontFormatException | IOException ex) {
+            Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+            return Optional.empty();
         }
     }
+
+    /**
+     * 背景的啟動工作都完成後, 將啟動時間紀錄寫入狀態紀錄與標準輸出
+     */
+    private void reportStartup() {
+        CompletableFuture.allOf(DEFAULT_TRANSPORT, INITIAL_CONFIG, CRYPTO_PROVIDER, statusFont).whenComplete((result, throwable) -> {
+            String summary = STARTUP.summary();
+            System.out.print(summary);
+            statusLog.append(summary);
+        });
+    }
+
+    /**
+     * 第一次送出請求時以已建立的 HttpClient 建立, 只在 EDT 上呼叫; 請求都以各 TenantApiClient 的 HttpClient 送出
+     *
+     * @param client 第一個請求的 HttpClient
+     * @return 非同步請求管線
+     */
+    private AsyncRequestPipeline requestPipeline(HttpClient client) {
+        if (Objects.isNull(requestPipeline)) {
+            requestPipeline = new AsyncRequestPipeline(client, 16, 256, SwingUtilities::invokeLater);
+            requestPipeline.setRequestCoalescer(requestCoalescer);
+        }
+        return requestPipeline;
+    }
     
-    private synchronized void resetSessionId(boolean isNew) {
+    private synchronized void resetSessionId() {
+        configObject = defaultCconfigObject;
+        configPersister.submit(configObject);
+    }
+
+    /**
+     * @return 帳號欄位對應的房客登入狀態
+     */
+    private TenantSession currentSession() {
+        String username = jtfAccount.getText();
+        return sessionPool.get(username).orElseGet(() -> sessionPool.add(new TenantProfile(username, "", "")));
+    }
+
+    private void updateSessionId(String sessionId) {
+        TenantSession session = currentSession();
+        if (session.updateFromSetCookie(sessionId)) {
+            persistSession(session.getCookie());
+        }
+    }
+
+    private synchronized void persistSession(TenantSession.SessionCookie cookie) {
+        configObject = Json.createObjectBuilder(configObject)
+                .add("session", Json.createObjectBuilder()
+                        .add("session-id", cookie.sessionId())
+                        .add("updated-at", formatTime(cookie.updatedAt()))
+                        .add("expired-at", cookie.expiresAt()))
+                .build();
+        configPersister.submit(configObject);
+    }
+
+    private static String formatTime(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).format(DateTimeFormatter.ISO_ZONED_DATE_TIME);
+    }
+
+    /**
+     * 以上次登入的參數在 PHPSESSID 到期前重新登入, 在 SessionRefresher 的執行緒上執行
+     *
+     * @param session 房客登入狀態
+     * @return 是否取得新的 PHPSESSID
+     */
+    private boolean refreshSession(TenantSession session) {
+        LoginRequest login = lastLogin;
+        if (Objects.isNull(login) || !session.getUsername().equals(login.bodyMap().get("username"))) {
+            return false;
+        }
+        long start = System.nanoTime();
+        Optional<HttpResponse<String>> response = login.api().doRequest(login.bodyMap(), "");
+        boolean result = response.map(r -> r.statusCode() < 400 && ApiResponse.readResult(r.body())).orElse(false);
+        journal.record(start, login.host(), login.bodyMap(), response.map(HttpResponse::statusCode).orElse(-1), response.map(r -> r.body().length()).orElse(0), result, "");
+        if (result && response.flatMap(TenantApiClient::setCookie).map(session::updateFromSetCookie).orElse(false)) {
+            persistSession(session.getCookie());
+            statusLog.append(String.format("session of %s refreshed, expires at %s%n  %s%n%n", session.getUsername(), formatTime(session.getCookie().expiresAt()), sessionRefresher.summary()));
+            return true;
+        }
+        statusLog.append(String.format("session refresh of %s failed%n%n", session.getUsername()));
+        return false;
+    }
+
+    /**
+     * 以登入取得的 mqtt 設定連線, 訂閱所有迴路並以各迴路的金鑰解密電表訊息
+     *
+     * @param settings mqtt 連線設定
+     * @param channels 房客的所有迴路
+     */
+    private void startMeterSubscriber(MqttSettings settings, TenantChannels channels) {
+        stopMeterSubscriber();
         try {
-            Files.writeString(CONFIG_PATH, defaultCconfigObject.toString(), isNew ? StandardOpenOption.CREATE : StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException ex) {
+            mqttClient = new MqttClient(settings.getServerUri(), MqttClient.generateClientId(), new MemoryPersistence());
+        } catch (MqttException ex) {
             Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+            return;
         }
+        // 每次連線使用新的連線選項, 不沿用前一位房客的帳號密碼
+        MqttConnectOptions connectOptions = new MqttConnectOptions();
+        connectOptions.setAutomaticReconnect(true);
+        MeterSubscriber subscriber = new MeterSubscriber(mqttClient, settings.applyTo(connectOptions), channels, 2, 4096,
+                (topic, message) -> lastMeterMessage = String.format("%s %s", topic, message));
+        meterSubscriber = subscriber;
+        CompletableFuture.runAsync(() -> {
+            try {
+                subscriber.start();
+                statusLog.append(String.format("mqtt subscribed %s on %s%n", channels, settings.getServerUri()));
+            } catch (MqttException ex) {
+                statusLog.append(String.format("mqtt connect failed: %s%n", ex));
+            }
+        });
     }
 
-    private synchronized void updateSessionId(String sessionId) {
-        if (Objects.nonNull(sessionId) && !sessionId.isEmpty()) {
-            Map<String, String> map = Arrays.stream(sessionId.split(";\\s?")).map(s -> s.split("=")).collect(Collectors.toMap(s -> s[0], s -> s[1]));
-            configObject = Json.createPointer("/session/session-id").replace(configObject, Json.createValue(map.get("PHPSESSID")));
-            configObject = Json.createPointer("/session/updated-at").replace(configObject, Json
-                    .createValue(Instant.now().atZone(ZoneId.systemDefault()).format(DateTimeFormatter.ISO_ZONED_DATE_TIME)));
-            if (map.containsKey("Max-Age")) {
-                Json.createPointer("/session/expired-at").replace(configObject, Json.createValue(Instant.now().plusSeconds(Integer.parseInt(map.get("Max-Age"))).toEpochMilli()));
-            }
-            
-            sessionObject = configObject.getJsonObject("session");
-            try {
-                Files.writeString(CONFIG_PATH, configObject.toString(), StandardOpenOption.TRUNCATE_EXISTING);
-            } catch (IOException ex) {
-                Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+    private void stopMeterSubscriber() {
+        if (Objects.nonNull(meterSubscriber)) {
+            CompletableFuture.runAsync(meterSubscriber::close);
+            meterSubscriber = null;
+        }
+    }
+
+    private void reportMeterSubscriber() {
+        MeterSubscriber subscriber = meterSubscriber;
+        if (Objects.nonNull(subscriber) && subscriber.getReceived() > 0) {
+            statusLog.append(String.format("mqtt %s%n  last = %s%n", subscriber.summary(), lastMeterMessage));
+        }
+    }
+
+    /**
+     * 記錄上次之後有新請求的 TransportClient 的連線統計
+     */
+    private void reportTransports() {
+        transports.forEach((environment, transport) -> {
+            TransportClient client = transport.getNow(null);
+            if (Objects.nonNull(client)) {
+                reportTransport(environment.name(), client);
             }
+        });
+        TransportClient client = DEFAULT_TRANSPORT.getNow(null);
+        if (Objects.nonNull(client)) {
+            reportTransport("default", client);
+        }
+    }
+
+    /**
+     * 上次之後有新的快取查詢時記錄快取統計
+     */
+    private void reportResponseCache() {
+        if (Objects.isNull(responseCache)) {
+            return;
+        }
+        long lookups = responseCache.getHits() + responseCache.getMisses();
+        if (lookups != reportedCacheLookups) {
+            reportedCacheLookups = lookups;
+            statusLog.append(responseCache.summary());
+        }
+    }
+
+    /**
+     * 上次之後有請求被合併時記錄合併統計
+     */
+    private void reportRequestCoalescer() {
+        long coalesced = requestCoalescer.getCoalesced();
+        if (coalesced != reportedCoalesced) {
+            reportedCoalesced = coalesced;
+            statusLog.append(String.format("%s%n", requestCoalescer.summary()));
+        }
+    }
+
+    private void reportTransport(String name, TransportClient transport) {
+        long requests = transport.getRequests();
+        Long reported = reportedTransportRequests.put(transport, requests);
+        if (requests > 0 && (Objects.isNull(reported) || reported != requests)) {
+            statusLog.append(String.format("%s %s%n", name, transport.summary()));
+        }
+    }
+
+    /**
+     * 第一次使用某主機環境時在 STARTUP_EXECUTOR 上建立其 TransportClient, 不在 EDT 上建立 SSLContext 與 HttpClient
+     *
+     * @param host 主機名稱
+     * @return 該主機環境的 TransportClient, 非已知主機時為預設逾時的 TransportClient
+     */
+    private CompletableFuture<TransportClient> transport(String host) {
+        return HostEnvironment.ofHost(host)
+                .map(environment -> transports.computeIfAbsent(environment,
+                        e -> CompletableFuture.supplyAsync(() -> STARTUP.time(String.format("http client %s", e), () -> TRANSPORT_PROFILE.withEnvironment(e).newClient()), STARTUP_EXECUTOR)))
+                .orElse(DEFAULT_TRANSPORT);
+    }
+
+    /**
+     * 主機的 TransportClient 已建立時立即執行 action, 否則建立完成後在 EDT 上執行
+     *
+     * @param host 主機名稱
+     * @param action 以 TransportClient 執行的動作
+     */
+    private void withTransport(String host, Consumer<TransportClient> action) {
+        CompletableFuture<TransportClient> transport = transport(host);
+        if (transport.isDone() && !transport.isCompletedExceptionally()) {
+            action.accept(transport.join());
+            return;
         }
+        transport.whenComplete((client, throwable) -> SwingUtilities.invokeLater(() -> {
+            if (Objects.nonNull(throwable)) {
+                statusLog.append(String.format("http client of %s failed: %s%n%n", host, throwable));
+            } else {
+                action.accept(client);
+            }
+        }));
     }
 
     /**
-     * 執行房客 API 之 HTTP 請求
+     * 非同步執行房客 API 之 HTTP 請求, 回應在 EDT 上交給 responseHandler 處理; 每個請求都寫入操作紀錄 (不含密碼)
      *
      * @param bodyMap
-     * @return HTTP 請求後的 Response 物件之 Optional 物件
+     * @param responseHandler 收到回應時的處理
      */
-    private Optional<HttpResponse<String>> doRequest(HashMap<String, String> bodyMap) {
-        HttpResponse<String> response = null;
+    private void doRequest(HashMap<String, String> bodyMap, Consumer<HttpResponse<String>> responseHandler) {
+        String host = jcbHost.getSelectedItem().toString();
+        URI endpoint = TenantApiClient.endpoint(jcbProtocol.getSelectedItem().toString(), host, jtfPath.getText());
+        withTransport(host, transport -> doRequest(new TenantApiClient(transport, endpoint), host, bodyMap, responseHandler));
+    }
 
-        String uri = String.format("%s://%s%s", jcbProtocol.getSelectedItem(), jcbHost.getSelectedItem(), jtfPath.getText());
-        String bodyContent = bodyMap.entrySet()
-                .stream()
-                .map(entry -> String.format("%s=%s", URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8), URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8)))
-                .collect(Collectors.joining("&"));
+    /**
+     * @param api 以已建立的 TransportClient 送出的 TenantApiClient
+     * @param host 主機名稱, 寫入操作紀錄與快取鍵
+     * @param bodyMap 服務參數
+     * @param responseHandler 收到回應時的處理
+     */
+    private void doRequest(TenantApiClient api, String host, HashMap<String, String> bodyMap, Consumer<HttpResponse<String>> responseHandler) {
+        TenantSession session = currentSession();
+        if (!Set.of("login", "logout").contains(bodyMap.get("d")) && !session.getSessionId().isEmpty() && !session.isActive(System.currentTimeMillis())) {
+            // 不以已過期的 PHPSESSID 送出請求
+            statusLog.append(String.format("%s skipped: session expired at %s, please log in again%n%n", bodyMap.get("d"), formatTime(session.getCookie().expiresAt())));
+            return;
+        }
+        String sessionId = session.getSessionId();
+        String operationKey = OperationLatencies.keyOf(bodyMap);
+        TenantOperation operation = TenantOperation.of(bodyMap.get("d"), bodyMap.get("m")).orElse(null);
+        String tenant = String.format("%s %s", host, bodyMap.get("username"));
+        ResponseCache.Lookup lookup = Objects.nonNull(responseCache) && Objects.nonNull(operation) && responseCache.isCacheable(operation)
+                ? responseCache.lookup(tenant, operation, bodyMap) : null;
+        if (Objects.nonNull(lookup) && lookup.isHit()) {
+            statusLog.append(String.format("%s served from cache%n", operationKey));
+            responseHandler.accept(lookup.getResponse());
+            return;
+        }
+        long start = System.nanoTime();
+        requestPipeline(api.getClient()).submit(api, bodyMap, sessionId, response -> {
+            if (Objects.nonNull(lookup)) {
+                responseCache.store(lookup, response);
+            } else if (Objects.nonNull(responseCache) && Objects.nonNull(operation)) {
+                responseCache.invalidate(tenant, operation);
+            }
+            journal.record(start, host, bodyMap, response.statusCode(), response.body().length(), ApiResponse.readResult(response.body()), "");
+            LatencyHistogram histogram = latencies.histogram(operationKey);
+            histogram.record(System.nanoTime() - start);
+            statusLog.append(String.format("%s latency: %s%n", operationKey, histogram.summary()));
+            TenantApiClient.setCookie(response).ifPresent(this::updateSessionId);
+            responseHandler.accept(response);
+        }, throwable -> {
+            if (Objects.isNull(lookup) && Objects.nonNull(responseCache) && Objects.nonNull(operation)) {
+                responseCache.invalidate(tenant, operation);
+            }
+            journal.record(start, host, bodyMap, -1, 0, false, throwable.getClass().getSimpleName());
+            System.err.printf("%tY/%<tm/%<td %<tp %<tI:%<tM:%<tS - %s throws %s: %s%n", System.currentTimeMillis(), MainFrame.class.getName(), throwable.getClass().getName(), throwable.getMessage());
+            statusLog.append(String.format("%s failed: %s%n%n", bodyMap.get("d"), throwable));
+        });
+    }
 
-        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(uri))
-                .timeout(Duration.ofSeconds(3))
-                .header("Content-Type", "application/x-www-form-urlencoded")
-                .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:94.0) Gecko/20100101 Firefox/94.0")
-                .POST(HttpRequest.BodyPublishers.ofString(bodyContent));
+    /**
+     * 選擇檔案後在背景將報表逐筆匯出為 CSV (.csv) 或 NDJSON, 回應內容不經過狀態紀錄
+     *
+     * @param bodyMap 服務參數
+     */
+    private void exportReport(HashMap<String, String> bodyMap) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File(String.format("%s.csv", bodyMap.get("d"))));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = fileChooser.getSelectedFile().toPath();
+        String host = jcbHost.getSelectedItem().toString();
+        URI endpoint = TenantApiClient.endpoint(jcbProtocol.getSelectedItem().toString(), host, jtfPath.getText());
+        String sessionId = currentSession().getSessionId();
+        withTransport(host, transport -> {
+            ReportExporter exporter = new ReportExporter(new TenantApiClient(transport, endpoint));
+            CompletableFuture.runAsync(() -> {
+                try {
+                    ReportExporter.ExportResult result = exporter.export(bodyMap, sessionId, path, ReportExporter.Format.of(path));
+                    latencies.record(OperationLatencies.keyOf(bodyMap), result.elapsedNanos());
+                    statusLog.append(String.format("%s export %s%n%n", bodyMap.get("d"), result));
+                } catch (IOException ex) {
+                    statusLog.append(String.format("%s export failed: %s%n%n", bodyMap.get("d"), ex));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        });
+    }
 
-        String sessionId = sessionObject.getString("session-id", "").isBlank() ? "" : String.format("PHPSESSID=%s", sessionObject.getString("session-id"));
-        System.out.println("sessionId = " + sessionId);
-        HttpRequest request = sessionId.isEmpty() ? requestBuilder.build() : requestBuilder.copy().header("Cookie", sessionId).build();
+    /**
+     * 在背景取得綁定清單後同時查詢每個電表的用電資料, 同時進行的請求數由 -Dtenant.sweep.concurrency 設定 (預設 8)
+     */
+    private void sweepDevices() {
+        TenantSession session = currentSession();
+        if (session.getSessionId().isEmpty() || !session.isActive(System.currentTimeMillis())) {
+            statusLog.append(String.format("all-devices skipped: please log in first%n%n"));
+            return;
+        }
+        String host = jcbHost.getSelectedItem().toString();
+        URI endpoint = TenantApiClient.endpoint(jcbProtocol.getSelectedItem().toString(), host, jtfPath.getText());
+        String username = jtfAccount.getText();
+        String sessionId = session.getSessionId();
+        withTransport(host, transport -> {
+            FanOutSweep sweep = new FanOutSweep(new TenantApiClient(transport, endpoint), Integer.getInteger("tenant.sweep.concurrency", 8), Duration.ofSeconds(30), false);
+            CompletableFuture.runAsync(() -> {
+                try {
+                    FanOutReport report = sweep.sweep(username, sessionId, FanOutSweep.DEFAULT_OPERATIONS);
+                    report.getResults().stream()
+                            .filter(result -> result.outcome() != FanOutReport.Outcome.CANCELLED)
+                            .forEach(result -> latencies.record(result.operation(), result.latencyNanos()));
+                    statusLog.append(String.format("%s%n", report));
+                } catch (IOException ex) {
+                    statusLog.append(String.format("all-devices failed: %s%n%n", ex));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        });
+    }
 
+    /**
+     * 串流讀取回應並寫入狀態紀錄; result 為 false 或無法解析時另外記錄原始內容
+     *
+     * @param bodyMap 服務參數
+     * @param response 回應
+     * @param dataFields 要完整取出的 data 欄位
+     * @return 成功時的 ApiResponse 物件
+     */
+    private Optional<ApiResponse> readResponse(Map<String, String> bodyMap, HttpResponse<String> response, String... dataFields) {
         try {
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            HttpHeaders headers = response.headers();
-            Optional<String> setCookieOptional = headers.firstValue("set-cookie");
-            updateSessionId(setCookieOptional.orElse(""));
-        } catch (IOException | InterruptedException ex) {
-            System.err.printf("%tY/%<tm/%<td %<tp %<tI:%<tM:%<tS - %s throws %s: %s%n", System.currentTimeMillis(), MainFrame.class.getName(), ex.getClass().getName(), ex.getMessage());
+            ApiResponse apiResponse = ApiResponse.parse(response.body(), Set.of(dataFields));
+            statusLog.append(String.format("%s %s%n%n", bodyMap.get("d"), apiResponse));
+            if (apiResponse.getResult()) {
+                return Optional.of(apiResponse);
+            }
+        } catch (JsonException e) {
+            // 非 JSON 回應, 以下記錄原始內容
         }
-        return Optional.ofNullable(response);
+        statusLog.append(String.format("%s body = %s%n", bodyMap.get("d"), response.body()));
+        return Optional.empty();
     }
 
     /**
      * Creates new form MainFrame
      */
     public MainFrame() {
-        initComponents();
+        STARTUP.time("init components", this::initComponents);
         setTextAreaDefaultFont();
-        mqttConnectionOptions.setAutomaticReconnect(true);
+        statusLogView = new StatusLogView(statusLog, jtaStatus, 20, 200_000, 4096);
+        statusLogView.start();
+        jbRefundReport.setToolTipText("Shift + 按鈕: 匯出為 CSV/NDJSON 檔案");
+        jbCreditReport.setToolTipText("Shift + 按鈕: 匯出為 CSV/NDJSON 檔案");
+        // 預先在背景建立所選主機環境的 TransportClient, 切換主機時亦同
+        transport(jcbHost.getSelectedItem().toString());
+        jcbHost.addActionListener(evt -> transport(jcbHost.getSelectedItem().toString()));
+        new javax.swing.Timer(5000, evt -> {
+            reportMeterSubscriber();
+            reportTransports();
+            reportResponseCache();
+            reportRequestCoalescer();
+        }).start();
+        INITIAL_CONFIG.thenAccept(config -> SwingUtilities.invokeLater(() -> applyConfig(config)));
+    }
 
-        try {
-            if (Files.notExists(CONFIG_PATH) || Files.readString(CONFIG_PATH, StandardCharsets.UTF_8).isBlank()) {
-                resetSessionId(true);
-            }
-            String configString = Files.readString(CONFIG_PATH, StandardCharsets.UTF_8);
-            try (JsonReader reader = Json.createReader(new StringReader(configString))) {
-                configObject = reader.readObject();
-            }
-            sessionObject = configObject.getJsonObject("session");
-        } catch (IOException ex) {
-            Logger.getLogger(MainFrame.class.getName()).log(Level.SEVERE, null, ex);
+    /**
+     * 在 EDT 上套用背景讀取的設定, 還原上次的 PHPSESSID; 讀取完成前已登入時保留新的 PHPSESSID
+     *
+     * @param config 設定檔內容
+     */
+    private synchronized void applyConfig(Optional<JsonObject> config) {
+        TenantSession session = currentSession();
+        if (!session.getSessionId().isEmpty()) {
+            return;
         }
+        JsonObject loaded = config.filter(c -> c.containsKey("session")).orElse(null);
+        if (Objects.isNull(loaded)) {
+            resetSessionId();
+            return;
+        }
+        configObject = loaded;
+        JsonObject sessionObject = configObject.getJsonObject("session");
+        long expiredAt = sessionObject.containsKey("expired-at") ? sessionObject.getJsonNumber("expired-at").longValue() : 0;
+        session.setCookie(new TenantSession.SessionCookie(sessionObject.getString("session-id", ""), 0, expiredAt));
     }
 
     /**
@@ -477,7 +857,7 @@ public class MainFrame extends javax.swing.JFrame {
 
         jlbDataManipulate.setText("操作類型:");
 
-        jcbDataManipulate.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "consumption", "channels-consumption", "room-consumption" }));
+        jcbDataManipulate.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "consumption", "channels-consumption", "room-consumption", "all-devices" }));
 
         jbData.setText("執行");
         jbData.addActionListener(new java.awt.event.ActionListener() {
@@ -676,13 +1056,15 @@ public class MainFrame extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void jbClearTextAreaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbClearTextAreaActionPerformed
-        jtaStatus.setText("");
+        statusLogView.clear();
     }//GEN-LAST:event_jbClearTextAreaActionPerformed
 
     private void jbLoginActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbLoginActionPerformed
-//        if (sessionObject.getLong("expired-at") > System.currentTimeMillis()) {
-//            return;
-//        }
+        TenantSession currentSession = currentSession();
+        if (currentSession.isActive(System.currentTimeMillis()) && currentSession.getCookie().expiresAt() > 0 && !currentSession.getLoginData().isEmpty()) {
+            statusLog.append(String.format("login skipped: session of %s is valid until %s%n%n", currentSession.getUsername(), formatTime(currentSession.getCookie().expiresAt())));
+            return;
+        }
 
         //<editor-fold desc="登入服務參數">
         HashMap<String, String> map = new HashMap<>();
@@ -695,26 +1077,22 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("lang-code", "English".equals(jcbLangCode.getSelectedItem().toString()) ? "en" : "zh-TW");
         //</editor-fold>
 
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try (JsonReader loginReader = Json.createReader(new StringReader(response.body()))) {
-            JsonObject bodyObject = loginReader.readObject();
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.getBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-                return;
-            }
-            loginDataObject = bodyObject.getJsonObject("data");
-            mqttObject = loginDataObject.getJsonObject("mqtt");
-            JsonArray channelsArray = loginDataObject.getJsonArray("channels");
-            if (!channelsArray.isEmpty()) {
-                channelsObject = channelsArray.getJsonObject(0);
-                topicPrefix = String.format("%s/%s", mqttObject.getString("topic"), channelsObject.getString("mac-address"));
-                keySeed = String.format("%s+%s", mqttObject.getString("topic"), channelsObject.getString("mac-address"));
-            }
-        } catch (JsonException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-        }
+        String host = jcbHost.getSelectedItem().toString();
+        URI endpoint = TenantApiClient.endpoint(jcbProtocol.getSelectedItem().toString(), host, jtfPath.getText());
+        withTransport(host, transport -> {
+            TenantApiClient api = new TenantApiClient(transport, endpoint);
+            LoginRequest loginRequest = new LoginRequest(api, host, Map.copyOf(map));
+            doRequest(api, host, map, response -> readResponse(map, response, LOGIN_DATA_FIELDS).ifPresent(apiResponse -> {
+                TenantSession session = currentSession();
+                session.setLoginData(apiResponse.getData());
+                lastLogin = loginRequest;
+                sessionRefresher.track(session);
+                TenantChannels channels = session.getTenantChannels(CIPHER_METHOD);
+                if (!channels.isEmpty()) {
+                    startMeterSubscriber(MqttSettings.fromLogin(session.getMqtt(), host), channels);
+                }
+            }));
+        });
     }//GEN-LAST:event_jbLoginActionPerformed
 
     private void jbLogoutActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbLogoutActionPerformed
@@ -724,21 +1102,22 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("username", jtfAccount.getText());
         //</editor-fold>
 
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try (JsonReader logoutReader = Json.createReader(new StringReader(response.body()))) {
-            JsonObject bodyObject = logoutReader.readObject();
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.getBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JsonException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-        }
-//        resetSessionId(false);
+        stopMeterSubscriber();
+        sessionRefresher.untrack(currentSession());
+        lastLogin = null;
+        doRequest(map, response -> {
+            readResponse(map, response);
+            currentSession().clear();
+            resetSessionId();
+        });
     }//GEN-LAST:event_jbLogoutActionPerformed
 
     private void jbDataActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbDataActionPerformed
+        if ("all-devices".equals(jcbDataManipulate.getSelectedItem().toString())) {
+            sweepDevices();
+            return;
+        }
+
         //<editor-fold desc="即時抄表服務參數">
         HashMap<String, String> map = new HashMap<>();
         map.put("d", "data");
@@ -746,17 +1125,7 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("username", jtfAccount.getText());
         //</editor-fold>
         
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try {
-            JSONObject bodyObject = new JSONObject(response.body());
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.optBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JSONException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-        }
+        doRequest(map, response -> readResponse(map, response));
     }//GEN-LAST:event_jbDataActionPerformed
 
     private void jbDeviceBindingActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbDeviceBindingActionPerformed
@@ -776,17 +1145,7 @@ public class MainFrame extends javax.swing.JFrame {
         }
         //</editor-fold>
         
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try {
-            JSONObject bodyObject = new JSONObject(response.body());
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.optBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JSONException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-        }
+        doRequest(map, response -> readResponse(map, response));
     }//GEN-LAST:event_jbDeviceBindingActionPerformed
 
     private void jbRefundReportActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbRefundReportActionPerformed
@@ -796,17 +1155,11 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("username", jtfAccount.getText());
         //</editor-fold>
         
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try {
-            JSONObject bodyObject = new JSONObject(response.body());
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.optBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JSONException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
+        if ((evt.getModifiers() & java.awt.event.ActionEvent.SHIFT_MASK) != 0) {
+            exportReport(map);
+            return;
         }
+        doRequest(map, response -> readResponse(map, response));
     }//GEN-LAST:event_jbRefundReportActionPerformed
 
     private void jbCreditReportActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbCreditReportActionPerformed
@@ -816,17 +1169,11 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("username", jtfAccount.getText());
         //</editor-fold>
         
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try {
-            JSONObject bodyObject = new JSONObject(response.body());
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.optBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JSONException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
+        if ((evt.getModifiers() & java.awt.event.ActionEvent.SHIFT_MASK) != 0) {
+            exportReport(map);
+            return;
         }
+        doRequest(map, response -> readResponse(map, response));
     }//GEN-LAST:event_jbCreditReportActionPerformed
 
     private void jbRefundIssueActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jbRefundIssueActionPerformed
@@ -838,17 +1185,7 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("device-code", jtfRefundIssueDeviceCode.getText());
         //</editor-fold>
         
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try {
-            JSONObject bodyObject = new JSONObject(response.body());
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.optBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JSONException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-        }
+        doRequest(map, response -> readResponse(map, response));
         
     }//GEN-LAST:event_jbRefundIssueActionPerformed
 
@@ -865,17 +1202,7 @@ public class MainFrame extends javax.swing.JFrame {
         map.put("agree", jcbRefundAgree.isSelected() ? "1" : "0");
         //</editor-fold>
         
-        Optional<HttpResponse<String>> responseOptional = doRequest(map);
-        HttpResponse<String> response = responseOptional.get();
-        try {
-            JSONObject bodyObject = new JSONObject(response.body());
-            jtaStatus.append(String.format("%s bodyObject = %s%n%n", map.get("d"), bodyObject));
-            if (!bodyObject.optBoolean("result", true)) {
-                jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-            }
-        } catch (JSONException e) {
-            jtaStatus.append(String.format("%s body = %s%n", map.get("d"), response.body()));
-        }
+        doRequest(map, response -> readResponse(map, response));
     }//GEN-LAST:event_jbRefundAgreeExecuteActionPerformed
 
     /**
@@ -887,25 +1214,36 @@ public class MainFrame extends javax.swing.JFrame {
         /* If Nimbus (introduced in Java SE 6) is not available, stay with the default look and feel.
          * For details see http://download.oracle.com/javase/tutorial/uiswing/lookandfeel/plaf.html 
          */
-        try {
-            String lookAndFeelClassName = Arrays.stream(UIManager.getInstalledLookAndFeels())
-                    .filter(info -> "Nimbus".equals(info.getName())).findFirst()
-                    .map(UIManager.LookAndFeelInfo::getClassName)
-                    .orElse(UIManager.getCrossPlatformLookAndFeelClassName());
-            UIManager.setLookAndFeel(lookAndFeelClassName);
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | javax.swing.UnsupportedLookAndFeelException ex) {
-            java.util.logging.Logger.getLogger(MainFrame.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-        }
+        STARTUP.time("look and feel", () -> {
+            try {
+                String lookAndFeelClassName = Arrays.stream(UIManager.getInstalledLookAndFeels())
+                        .filter(info -> "Nimbus".equals(info.getName())).findFirst()
+                        .map(UIManager.LookAndFeelInfo::getClassName)
+                        .orElse(UIManager.getCrossPlatformLookAndFeelClassName());
+                UIManager.setLookAndFeel(lookAndFeelClassName);
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | javax.swing.UnsupportedLookAndFeelException ex) {
+                java.util.logging.Logger.getLogger(MainFrame.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+            }
+        });
         //</editor-fold>
         
         //</editor-fold>
 
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(() -> {
-            new MainFrame().setVisible(true);
+            MainFrame frame = STARTUP.time("construct frame", MainFrame::new);
+            STARTUP.time("show frame", () -> frame.setVisible(true));
+            STARTUP.mark("visible");
+            frame.reportStartup();
         });
     }
 
+    /**
+     * 重新登入所需的參數
+     */
+    private record LoginRequest(TenantApiClient api, String host, Map<String, String> bodyMap) {
+    }
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JLabel jLabel1;
     private javax.swing.JLabel jLabel2;
@@ -0,0 +1,90 @@
+package dev.dae.software.app;
+
+import dev.dae.software.util.StatusLog;
+import java.util.Objects;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * 以固定頻率將 StatusLog 的新紀錄批次附加到 JTextArea, 並限制文件長度; 過長的單筆紀錄只顯示開頭, 完整內容見紀錄檔
+ *
+ * @author Ben
+ */
+public class StatusLogView {
+
+    private final StatusLog statusLog;
+    private final JTextArea textArea;
+    private final int maxChars;
+    private final int maxEntryChars;
+    private final Timer timer;
+    private long shownSequence;
+
+    /**
+     * @param statusLog 狀態紀錄
+     * @param textArea 顯示用的 JTextArea
+     * @param framesPerSecond 每秒更新次數
+     * @param maxChars 文件長度上限, 超過時由開頭刪除
+     * @param maxEntryChars 單筆紀錄顯示長度上限
+     */
+    public StatusLogView(StatusLog statusLog, JTextArea textArea, int framesPerSecond, int maxChars, int maxEntryChars) {
+        this.statusLog = Objects.requireNonNull(statusLog);
+        this.textArea = Objects.requireNonNull(textArea);
+        this.maxChars = maxChars;
+        this.maxEntryChars = maxEntryChars;
+        this.timer = new Timer(Math.max(1, 1000 / framesPerSecond), evt -> flush());
+        timer.setCoalesce(true);
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * 清除畫面, 紀錄本身保留
+     */
+    public void clear() {
+        shownSequence = statusLog.getSequence();
+        textArea.setText("");
+    }
+
+    private void flush() {
+        StatusLog.Since since = statusLog.since(shownSequence);
+        if (since.sequence() == shownSequence) {
+            return;
+        }
+        shownSequence = since.sequence();
+        StringBuilder builder = new StringBuilder();
+        if (since.skipped() > 0) {
+            builder.append(String.format("... %d entries, see %s%n", since.skipped(), statusLog.getSpillPath()));
+        }
+        for (String text : since.texts()) {
+            if (text.length() > maxEntryChars) {
+                builder.append(text, 0, maxEntryChars).append(String.format("... (%d chars, see %s)%n", text.length(), statusLog.getSpillPath()));
+            } else {
+                builder.append(text);
+            }
+        }
+        Document document = textArea.getDocument();
+        int excess = document.getLength() + builder.length() - maxChars;
+        if (excess > 0) {
+            if (builder.length() >= maxChars) {
+                textArea.setText(builder.substring(builder.length() - maxChars));
+                textArea.setCaretPosition(textArea.getDocument().getLength());
+                return;
+            }
+            try {
+                document.remove(0, excess);
+            } catch (BadLocationException ex) {
+                textArea.setText("");
+            }
+        }
+        textArea.append(builder.toString());
+        textArea.setCaretPosition(document.getLength());
+    }
+}
@@ -0,0 +1,519 @@
+package dev.dae.software.cli;
+
+import dev.dae.software.api.RequestCoalescer;
+import dev.dae.software.api.ResponseCache;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.api.TenantProfile;
+import dev.dae.software.api.TransportClient;
+import dev.dae.software.api.TransportProfile;
+import dev.dae.software.journal.JournalEntry;
+import dev.dae.software.journal.JournalReplayer;
+import dev.dae.software.journal.ReplayReport;
+import dev.dae.software.journal.SessionJournal;
+import dev.dae.software.load.CapacityHistory;
+import dev.dae.software.load.CapacityReport;
+import dev.dae.software.load.CapacitySearch;
+import dev.dae.software.load.FanOutReport;
+import dev.dae.software.load.FanOutSweep;
+import dev.dae.software.load.LoadGenerator;
+import dev.dae.software.load.LoadReport;
+import dev.dae.software.load.Scenario;
+import dev.dae.software.mock.LatencyDistribution;
+import dev.dae.software.mock.MockBehavior;
+import dev.dae.software.mock.MockMqttBroker;
+import dev.dae.software.mock.MockTenantServer;
+import dev.dae.software.session.SessionPool;
+import dev.dae.software.session.SessionRefresher;
+import dev.dae.software.session.TenantSession;
+import dev.dae.software.util.HostEnvironment;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 無 AWT/Swing 的命令列模式, 供排程與沒有顯示器的容器內壓力測試代理程式使用
+ * <p>
+ * 結果以一行 JSON (或 --format text) 輸出到標準輸出, 進度與統計摘要輸出到標準錯誤. 本類別與其使用的類別都不得引用 dev.dae.software.app 與 java.desktop, 啟動時不載入任何 AWT 類別
+ *
+ * @author Ben
+ */
+public final class TenantCli {
+
+    public static final int EXIT_OK = 0;
+    /**
+     * 錯誤比例超過 --max-error-rate
+     */
+    public static final int EXIT_THRESHOLD = 2;
+    public static final int EXIT_USAGE = 64;
+    public static final int EXIT_IO = 74;
+    private static final String USAGE = """
+            usage: tenant-app-tester <command> [options]
+
+            commands:
+              load <scenario>      run a load scenario and print a LoadReport
+                --host <host|mock>   target host, "mock" starts an in-process MockTenantServer
+                --protocol <p>       http or https (default https, http for mock)
+                --path <path>        API path (default /ws/app.php)
+                --tenants <file>     tenant list, one username,password,user-code[,device-code[,channel-name]] per line
+                --tenant <line>      single tenant in the same format, ';' separates several
+                --mix <mix>          operation mix overriding the scenario, e.g. data/consumption*4,device-binding/list
+                --users <n>          virtual users (default 10)
+                --rate <req/s>       open model at a fixed rate; 0 runs the closed model (default 0)
+                --duration <time>    run time, e.g. 30s, 5m or PT1M (default 30s)
+                --transport <spec>   TransportProfile spec, e.g. h1,fixed:8 (default h2)
+                --cache <entries>    enable ResponseCache with the given capacity
+                --coalesce           enable single-flight coalescing of identical reads
+                --refresh            refresh sessions ahead of Max-Age expiry
+                --max-error-rate <r> exit with status 2 when the error rate exceeds r (0..1)
+                --mock-latency <d>   latency distribution for --host mock, e.g. lognormal:20:200
+              replay <journal>     replay a SessionJournal (.ndjson)
+                --host, --protocol, --path, --transport as above
+                --speedup <x>        1 keeps recorded gaps, 0 sends back to back (default 1)
+                --password <pw>      password used for recorded logins
+              capacity [scenario]  search for the maximum sustainable throughput with an AIMD concurrency controller
+                --host, --protocol, --path, --transport, --tenants, --tenant, --mix, --mock-latency as in load
+                --target-p99 <time>  p99 response time limit (default 500ms)
+                --max-error-rate <r> limit for connection failures, timeouts and HTTP errors (default 0.01)
+                --window <time>      measurement time per step (default 10s)
+                --initial <n>        starting concurrency (default 1), --max-users <n> upper bound (default 256)
+                --steps <n>          maximum number of steps (default 30)
+                --history <file>     knee history per environment (default ~/.tenant-api-capacity.ndjson, "none" disables)
+                --release <label>    backend release recorded with the knee
+              sweep                log in one tenant, list its bound devices and fetch each device's data concurrently
+                --host, --protocol, --path, --transport, --tenant, --tenants as above (first tenant is used)
+                --operations <ops>   per-device operations (default data/consumption,data/channels-consumption)
+                --concurrency <n>    maximum requests in flight (default 8)
+                --timeout <time>     cancel whatever is still running after this time (default 30s)
+                --fail-fast          cancel the remaining requests after the first failure
+                --max-error-rate <r> exit with status 2 when the failed share of requests exceeds r (0..1)
+                --mock-latency <d>   as above, --mock-channels <n> devices per mock tenant (default 8)
+              mock                 run MockTenantServer (and optionally MockMqttBroker) until interrupted
+                --port <n>           HTTP port (default 8080)
+                --mqtt-port <n>      also start MockMqttBroker on this port
+                --latency <d>        latency distribution, e.g. fixed:20, uniform:5:50, lognormal:20:200
+                --error-rate <r>     HTTP 500 rate, --failure-rate <r> result=false rate
+                --duration <time>    stop after this time
+              scenarios            list the named scenarios
+
+            common options:
+              --format <json|text> output format (default json)
+            """;
+    private static final Set<String> FLAGS = Set.of("coalesce", "refresh", "fail-fast", "help");
+
+    private TenantCli() {
+    }
+
+    public static void main(String[] args) {
+        // HttpClient 與 MockTenantServer 的執行緒可能仍在執行, 直接以狀態碼結束
+        System.exit(run(System.out, System.err, args));
+    }
+
+    /**
+     * @param out 結果輸出
+     * @param err 進度與錯誤輸出
+     * @param args 命令列參數
+     * @return 結束狀態碼
+     */
+    public static int run(PrintStream out, PrintStream err, String... args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException ex) {
+            err.printf("%s%nrun with --help for usage%n", ex.getMessage());
+            return EXIT_USAGE;
+        }
+        if (options.positional.isEmpty() || options.has("help")) {
+            err.print(USAGE);
+            return options.positional.isEmpty() && !options.has("help") ? EXIT_USAGE : EXIT_OK;
+        }
+        try {
+            return switch (options.positional.get(0)) {
+                case "load" ->
+                    load(options, out, err);
+                case "replay" ->
+                    replay(options, out, err);
+                case "capacity" ->
+                    capacity(options, out, err);
+                case "sweep" ->
+                    sweep(options, out, err);
+                case "mock" ->
+                    mock(options, out, err);
+                case "scenarios" ->
+                    scenarios(options, out);
+                default ->
+                    throw new IllegalArgumentException(String.format("unknown command: %s", options.positional.get(0)));
+            };
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            err.printf("%s%nrun with --help for usage%n", ex.getMessage());
+            return EXIT_USAGE;
+        } catch (IOException | UncheckedIOException ex) {
+            err.printf("%s%n", ex);
+            return EXIT_IO;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return EXIT_IO;
+        }
+    }
+
+    private static int load(Options options, PrintStream out, PrintStream err) throws IOException {
+        Scenario scenario = Scenario.of(options.argument(1, "scenario"))
+                .orElseThrow(() -> new IllegalArgumentException(String.format("unknown scenario: %s, expected one of %s", options.positional.get(1), Arrays.toString(Scenario.values()))));
+        List<TenantOperation> operationMix = Scenario.parseMix(options.get("mix", scenario.getMix()));
+        int users = options.getInt("users", 10);
+        double rate = options.getDouble("rate", 0);
+        Duration duration = parseDuration(options.get("duration", "30s"));
+        double maxErrorRate = options.getDouble("max-error-rate", 1);
+        MockTenantServer server = null;
+        try {
+            if ("mock".equals(options.get("host", ""))) {
+                server = MockTenantServer.start(0, MockBehavior.DEFAULT.withLatency(LatencyDistribution.parse(options.get("mock-latency", "none"))));
+            }
+            SessionPool sessions = tenants(options, Objects.nonNull(server), users);
+            Target target = target(options, server);
+            LoadGenerator generator = new LoadGenerator(target.api(), sessions, operationMix);
+            ResponseCache cache = options.has("cache") ? new ResponseCache(options.getInt("cache", 1024)) : null;
+            RequestCoalescer coalescer = options.has("coalesce") ? new RequestCoalescer() : null;
+            SessionRefresher refresher = options.has("refresh") ? new SessionRefresher(generator::login, 0.75, 0.9) : null;
+            generator.setResponseCache(cache);
+            generator.setRequestCoalescer(coalescer);
+            generator.setSessionRefresher(refresher);
+            err.printf("load %s: %s, %d tenants, %d users, %s, %s%n", scenario, target.api().getEndpoint(), sessions.size(), users,
+                    rate > 0 ? String.format("%.1f req/s", rate) : "closed model", duration);
+            LoadReport report = rate > 0 ? generator.runFixedRate(rate, users, duration) : generator.runFixedConcurrency(users, duration);
+            if (Objects.nonNull(refresher)) {
+                err.println(refresher.summary());
+                refresher.close();
+            }
+            if (Objects.nonNull(cache)) {
+                err.print(cache.summary());
+            }
+            if (Objects.nonNull(coalescer)) {
+                err.println(coalescer.summary());
+            }
+            err.println(target.client().summary());
+            if (Objects.nonNull(server)) {
+                err.println(server.summary());
+            }
+            out.println(options.isText() ? report.toString() : report.toJson());
+            return report.getErrorRate() > maxErrorRate ? EXIT_THRESHOLD : EXIT_OK;
+        } finally {
+            if (Objects.nonNull(server)) {
+                server.close();
+            }
+        }
+    }
+
+    private static int replay(Options options, PrintStream out, PrintStream err) throws IOException {
+        Path path = Paths.get(options.argument(1, "journal"));
+        List<JournalEntry> entries = SessionJournal.read(path);
+        Map<String, String> overrides = new HashMap<>();
+        if (options.has("password")) {
+            overrides.put(JournalEntry.PASSWORD, options.get("password", ""));
+        }
+        Target target = target(options, null);
+        err.printf("replay %d entries from %s to %s%n", entries.size(), path, target.api().getEndpoint());
+        ReplayReport report = new JournalReplayer(target.api(), overrides).replay(entries, options.getDouble("speedup", 1));
+        err.println(target.client().summary());
+        out.println(options.isText() ? report.toString() : report.toJson());
+        return EXIT_OK;
+    }
+
+    private static int capacity(Options options, PrintStream out, PrintStream err) throws IOException {
+        Scenario scenario = options.positional.size() > 1
+                ? Scenario.of(options.positional.get(1)).orElseThrow(() -> new IllegalArgumentException(String.format("unknown scenario: %s, expected one of %s", options.positional.get(1), Arrays.toString(Scenario.values()))))
+                : Scenario.DASHBOARD;
+        List<TenantOperation> operationMix = Scenario.parseMix(options.get("mix", scenario.getMix()));
+        Duration targetP99 = parseDuration(options.get("target-p99", "500ms"));
+        double maxErrorRate = options.getDouble("max-error-rate", 0.01);
+        Duration window = parseDuration(options.get("window", "10s"));
+        int initial = options.getInt("initial", 1);
+        int maxUsers = options.getInt("max-users", 256);
+        String historyPath = options.get("history", Paths.get(System.getProperty("user.home"), ".tenant-api-capacity.ndjson").toString());
+        MockTenantServer server = null;
+        try {
+            if ("mock".equals(options.get("host", ""))) {
+                server = MockTenantServer.start(0, MockBehavior.DEFAULT.withLatency(LatencyDistribution.parse(options.get("mock-latency", "none"))));
+            }
+            SessionPool sessions = tenants(options, Objects.nonNull(server), maxUsers);
+            Target target = target(options, server);
+            String label = Objects.nonNull(server) ? "mock" : HostEnvironment.ofHost(options.require("host")).map(HostEnvironment::name).orElse(options.require("host"));
+            LoadGenerator generator = new LoadGenerator(target.api(), sessions, operationMix);
+            CapacitySearch search = new CapacitySearch((concurrency, duration) -> {
+                LoadReport report = generator.runFixedConcurrency(concurrency, duration);
+                err.printf("  concurrency = %d: %.1f req/s, p99 = %.2f ms, error rate = %.2f%%%n", concurrency, report.getThroughput(),
+                        report.getResponseTimes().total().getValueAtPercentile(99) / 1e6, report.getErrorRate() * 100);
+                return report;
+            }, targetP99, maxErrorRate, window);
+            err.printf("capacity %s (%s): %s, %d tenants, target p99 = %s, window = %s%n", label, scenario, target.api().getEndpoint(), sessions.size(), targetP99, window);
+            CapacityReport report = search.run(label, initial, maxUsers, options.getInt("steps", 30));
+            err.println(target.client().summary());
+            if (!"none".equals(historyPath)) {
+                CapacityHistory history = new CapacityHistory(Paths.get(historyPath));
+                Optional<JsonObject> previous = history.last(label);
+                if (report.getKnee().isPresent()) {
+                    JsonObject entry = history.append(report, options.get("release", ""));
+                    previous.ifPresent(last -> err.println(CapacityHistory.describeChange(last, entry)));
+                }
+            }
+            out.println(options.isText() ? report.toString() : report.toJson());
+            return EXIT_OK;
+        } finally {
+            if (Objects.nonNull(server)) {
+                server.close();
+            }
+        }
+    }
+
+    private static int sweep(Options options, PrintStream out, PrintStream err) throws IOException, InterruptedException {
+        List<TenantOperation> operations = options.has("operations")
+                ? Scenario.parseMix(options.get("operations", "")).stream().distinct().toList() : FanOutSweep.DEFAULT_OPERATIONS;
+        int concurrency = options.getInt("concurrency", 8);
+        Duration timeout = parseDuration(options.get("timeout", "30s"));
+        double maxErrorRate = options.getDouble("max-error-rate", 1);
+        MockTenantServer server = null;
+        try {
+            if ("mock".equals(options.get("host", ""))) {
+                server = MockTenantServer.start(0, MockBehavior.DEFAULT
+                        .withLatency(LatencyDistribution.parse(options.get("mock-latency", "none")))
+                        .withChannels(options.getInt("mock-channels", 8)));
+            }
+            SessionPool sessions = tenants(options, Objects.nonNull(server), 1);
+            Target target = target(options, server);
+            TenantSession session = sessions.next();
+            if (!new LoadGenerator(target.api(), sessions, List.of(TenantOperation.LOGIN)).login(session)) {
+                throw new IOException(String.format("login failed for %s", session.getUsername()));
+            }
+            err.printf("sweep %s: %s, %s, concurrency = %d, timeout = %s%n", session.getUsername(), target.api().getEndpoint(), operations, concurrency, timeout);
+            FanOutReport report = new FanOutSweep(target.api(), concurrency, timeout, options.has("fail-fast")).sweep(session.getUsername(), session.getSessionId(), operations);
+            err.println(target.client().summary());
+            if (Objects.nonNull(server)) {
+                err.println(server.summary());
+            }
+            out.println(options.isText() ? report.toString() : report.toJson());
+            return report.getErrorRate() > maxErrorRate ? EXIT_THRESHOLD : EXIT_OK;
+        } finally {
+            if (Objects.nonNull(server)) {
+                server.close();
+            }
+        }
+    }
+
+    private static int mock(Options options, PrintStream out, PrintStream err) throws IOException, InterruptedException {
+        int port = options.getInt("port", 8080);
+        MockBehavior behavior = MockBehavior.DEFAULT
+                .withLatency(LatencyDistribution.parse(options.get("latency", "none")))
+                .withErrorRate(options.getDouble("error-rate", 0))
+                .withFailureRate(options.getDouble("failure-rate", 0));
+        MockMqttBroker broker = null;
+        if (options.has("mqtt-port")) {
+            broker = MockMqttBroker.start(options.getInt("mqtt-port", 1883));
+            behavior = behavior.withMqttPort(broker.getPort());
+        }
+        MockTenantServer server = MockTenantServer.start(port, behavior);
+        MockMqttBroker mqttBroker = broker;
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread shutdownHook = new Thread(() -> {
+            err.println(server.summary());
+            server.close();
+            if (Objects.nonNull(mqttBroker)) {
+                err.println(mqttBroker.summary());
+                mqttBroker.close();
+            }
+            stopped.countDown();
+        }, "mock-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        out.println(Json.createObjectBuilder()
+                .add("endpoint", server.getEndpoint().toString())
+                .add("mqtt", Objects.isNull(broker) ? "" : broker.getServerUri())
+                .build());
+        out.flush();
+        if (options.has("duration")) {
+            if (!stopped.await(parseDuration(options.get("duration", "")).toMillis(), TimeUnit.MILLISECONDS)) {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                shutdownHook.run();
+            }
+        } else {
+            stopped.await();
+        }
+        return EXIT_OK;
+    }
+
+    private static int scenarios(Options options, PrintStream out) {
+        if (options.isText()) {
+            Arrays.stream(Scenario.values()).forEach(scenario -> out.printf("%-12s %s%n", scenario, scenario.getMix()));
+        } else {
+            JsonObjectBuilder builder = Json.createObjectBuilder();
+            Arrays.stream(Scenario.values()).forEach(scenario -> builder.add(scenario.toString(), scenario.getMix()));
+            out.println(builder.build());
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * @param options 命令列參數
+     * @param mock 目標是否為同一程序內的 MockTenantServer
+     * @param users 虛擬使用者數量, 對 MockTenantServer 且未指定房客時建立同樣數量的房客
+     * @return 房客池
+     */
+    private static SessionPool tenants(Options options, boolean mock, int users) throws IOException {
+        SessionPool sessions = options.has("tenants") ? SessionPool.load(Paths.get(options.get("tenants", ""))) : new SessionPool();
+        if (options.has("tenant")) {
+            Arrays.stream(options.get("tenant", "").split(";")).filter(line -> !line.isBlank()).map(SessionPool::parseProfile).forEach(sessions::add);
+        }
+        if (sessions.size() == 0 && mock) {
+            for (int i = 0; i < users; i++) {
+                sessions.add(new TenantProfile(String.format("tenant-%03d@mock", i), "mock", String.format("%010d", i)));
+            }
+        }
+        if (sessions.size() == 0) {
+            throw new IllegalArgumentException("no tenants, use --tenants <file> or --tenant <line>");
+        }
+        return sessions;
+    }
+
+    /**
+     * @param options 命令列參數
+     * @param server 同一程序內的 MockTenantServer, 可為 null
+     * @return 房客 API 與其 TransportClient
+     */
+    private static Target target(Options options, MockTenantServer server) {
+        TransportProfile profile = TransportProfile.parse(options.get("transport", ""));
+        URI endpoint;
+        if (Objects.nonNull(server)) {
+            endpoint = server.getEndpoint();
+        } else {
+            String host = options.require("host");
+            profile = HostEnvironment.ofHost(host).map(profile::withEnvironment).orElse(profile);
+            endpoint = TenantApiClient.endpoint(options.get("protocol", "https"), host, options.get("path", MockTenantServer.PATH));
+        }
+        TransportClient client = profile.newClient();
+        return new Target(client, new TenantApiClient(client, endpoint));
+    }
+
+    /**
+     * @param text 秒數, 30s, 5m, 1h 或 ISO-8601 (PT30S)
+     * @return Duration 物件
+     */
+    static Duration parseDuration(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        if (value.startsWith("p")) {
+            return Duration.parse(value.toUpperCase(Locale.ROOT));
+        }
+        try {
+            if (value.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+            } else if (value.endsWith("s")) {
+                return Duration.ofMillis((long) (Double.parseDouble(value.substring(0, value.length() - 1)) * 1000));
+            } else if (value.endsWith("m")) {
+                return Duration.ofMillis((long) (Double.parseDouble(value.substring(0, value.length() - 1)) * 60_000));
+            } else if (value.endsWith("h")) {
+                return Duration.ofMillis((long) (Double.parseDouble(value.substring(0, value.length() - 1)) * 3_600_000));
+            }
+            return Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("invalid duration: %s", text), ex);
+        }
+    }
+
+    private record Target(TransportClient client, TenantApiClient api) {
+    }
+
+    /**
+     * 命令列參數: 位置參數與 --name value, --name=value 或旗標 --name
+     */
+    private static final class Options {
+
+        private final List<String> positional = new ArrayList<>();
+        private final Map<String, String> named = new HashMap<>();
+
+        static Options parse(String... args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    options.positional.add(arg);
+                    continue;
+                }
+                String name = arg.substring(2);
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    options.named.put(name.substring(0, equals), name.substring(equals + 1));
+                } else if (FLAGS.contains(name)) {
+                    options.named.put(name, "true");
+                } else if (i + 1 < args.length) {
+                    options.named.put(name, args[++i]);
+                } else {
+                    throw new IllegalArgumentException(String.format("missing value for --%s", name));
+                }
+            }
+            return options;
+        }
+
+        boolean has(String name) {
+            return named.containsKey(name);
+        }
+
+        boolean isText() {
+            String format = get("format", "json");
+            if (!Set.of("json", "text").contains(format)) {
+                throw new IllegalArgumentException(String.format("unknown format: %s", format));
+            }
+            return "text".equals(format);
+        }
+
+        String get(String name, String defaultValue) {
+            return named.getOrDefault(name, defaultValue);
+        }
+
+        String require(String name) {
+            String value = named.get(name);
+            if (Objects.isNull(value) || value.isBlank()) {
+                throw new IllegalArgumentException(String.format("--%s is required", name));
+            }
+            return value;
+        }
+
+        String argument(int index, String name) {
+            if (positional.size() <= index) {
+                throw new IllegalArgumentException(String.format("missing <%s>", name));
+            }
+            return positional.get(index);
+        }
+
+        int getInt(String name, int defaultValue) {
+            try {
+                return has(name) ? Integer.parseInt(named.get(name).trim()) : defaultValue;
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException(String.format("--%s must be an integer", name), ex);
+            }
+        }
+
+        double getDouble(String name, double defaultValue) {
+            try {
+                return has(name) ? Double.parseDouble(named.get(name).trim()) : defaultValue;
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException(String.format("--%s must be a number", name), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package dev.dae.software.journal;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 操作紀錄的一筆: 送出時間, 主機, 服務參數與回應摘要
+ *
+ * @param offsetMicros 自紀錄開始到送出的時間 (微秒)
+ * @param host 送出時的主機
+ * @param operation 服務參數, 不含密碼
+ * @param status HTTP 狀態碼, 連線失敗時為 -1
+ * @param latencyMicros 回應時間 (微秒)
+ * @param bytes 回應內容長度
+ * @param result 回應的 result
+ * @param error 連線失敗的例外名稱, 成功時為空字串
+ * @author Ben
+ */
+public record JournalEntry(long offsetMicros, String host, Map<String, String> operation, int status, long latencyMicros, long bytes, boolean result, String error) {
+
+    /**
+     * 不寫入紀錄的服務參數
+     */
+    public static final String PASSWORD = "password";
+
+    public JournalEntry {
+        Objects.requireNonNull(host);
+        Objects.requireNonNull(error);
+        Map<String, String> copy = new LinkedHashMap<>(operation);
+        copy.remove(PASSWORD);
+        operation = Map.copyOf(copy);
+    }
+
+    /**
+     * @return 服務名稱 (d 參數)
+     */
+    public String getD() {
+        return operation.getOrDefault("d", "");
+    }
+
+    /**
+     * @return 一行 JSON
+     */
+    public String toJson() {
+        JsonObjectBuilder operationBuilder = Json.createObjectBuilder();
+        operation.forEach(operationBuilder::add);
+        JsonObjectBuilder builder = Json.createObjectBuilder()
+                .add("t", offsetMicros)
+                .add("host", host)
+                .add("op", operationBuilder)
+                .add("status", status)
+                .add("latency", latencyMicros)
+                .add("bytes", bytes)
+                .add("result", result);
+        if (!error.isEmpty()) {
+            builder.add("error", error);
+        }
+        return builder.build().toString();
+    }
+
+    /**
+     * @param object toJson 產生的 JSON 物件
+     * @return JournalEntry 物件
+     */
+    public static JournalEntry fromJson(JsonObject object) {
+        Map<String, String> operation = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonValue> entry : object.getJsonObject("op").entrySet()) {
+            operation.put(entry.getKey(), entry.getValue() instanceof JsonString string ? string.getString() : entry.getValue().toString());
+        }
+        return new JournalEntry(object.getJsonNumber("t").longValue(), object.getString("host", ""), operation, object.getInt("status", -1),
+                object.getJsonNumber("latency").longValue(), object.getJsonNumber("bytes").longValue(), object.getBoolean("result", true), object.getString("error", ""));
+    }
+}
@@ -0,0 +1,103 @@
+package dev.dae.software.journal;
+
+import dev.dae.software.api.ApiResponse;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantProfile;
+import dev.dae.software.metrics.OperationLatencies;
+import dev.dae.software.session.TenantSession;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 依紀錄的順序重播操作, 可依原始間隔或加速; 每位房客的 PHPSESSID 由重播中的回應維護
+ *
+ * @author Ben
+ */
+public class JournalReplayer {
+
+    private final TenantApiClient api;
+    private final Map<String, String> overrides;
+
+    /**
+     * @param api 重播目標的房客 API
+     * @param overrides 取代紀錄中的服務參數, 例如 password (紀錄不含密碼, 登入時補上) 或 username
+     */
+    public JournalReplayer(TenantApiClient api, Map<String, String> overrides) {
+        this.api = Objects.requireNonNull(api);
+        this.overrides = Map.copyOf(overrides);
+    }
+
+    /**
+     * 依序重播, 前一個請求完成後才送出下一個; 回應時間自排定的送出時間起算
+     *
+     * @param entries 紀錄, 依送出時間排序
+     * @param speedup 加速倍率, 1 為原始間隔, 0 表示不等待間隔
+     * @return 重播結果
+     */
+    public ReplayReport replay(List<JournalEntry> entries, double speedup) {
+        if (speedup < 0) {
+            throw new IllegalArgumentException("speedup must not be negative");
+        }
+        OperationLatencies recorded = new OperationLatencies();
+        OperationLatencies replayed = new OperationLatencies();
+        List<String> mismatches = new ArrayList<>();
+        Map<String, TenantSession> sessions = new HashMap<>();
+        long transportErrors = 0;
+        long firstOffset = entries.isEmpty() ? 0 : entries.get(0).offsetMicros();
+        long lastOffset = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).offsetMicros();
+        long start = System.nanoTime();
+        for (JournalEntry entry : entries) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            long intendedStart = speedup > 0 ? start + (long) ((entry.offsetMicros() - firstOffset) * 1000 / speedup) : System.nanoTime();
+            long delay = intendedStart - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Map<String, String> operation = operationOf(entry);
+            String key = OperationLatencies.keyOf(operation);
+            String username = operation.getOrDefault("username", "");
+            TenantSession session = sessions.computeIfAbsent(username, name -> new TenantSession(new TenantProfile(name, "", "")));
+            recorded.record(key, entry.latencyMicros() * 1000);
+            try {
+                HttpResponse<String> response = api.getClient().send(api.buildRequest(operation, session.getSessionId()), HttpResponse.BodyHandlers.ofString());
+                replayed.record(key, System.nanoTime() - intendedStart);
+                TenantApiClient.setCookie(response).ifPresent(session::updateFromSetCookie);
+                if ("logout".equals(entry.getD())) {
+                    session.clear();
+                }
+                boolean result = ApiResponse.readResult(response.body());
+                if (response.statusCode() != entry.status() || result != entry.result()) {
+                    mismatches.add(String.format("%s at %.3f s: recorded status = %d, result = %s; replayed status = %d, result = %s",
+                            key, (entry.offsetMicros() - firstOffset) / 1e6, entry.status(), entry.result(), response.statusCode(), result));
+                }
+            } catch (IOException ex) {
+                transportErrors++;
+                replayed.record(key, System.nanoTime() - intendedStart);
+                if (entry.status() >= 0) {
+                    mismatches.add(String.format("%s at %.3f s: recorded status = %d; replay failed: %s", key, (entry.offsetMicros() - firstOffset) / 1e6, entry.status(), ex));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new ReplayReport(api.getEndpoint().toString(), speedup, entries.size(), lastOffset - firstOffset, System.nanoTime() - start, transportErrors, mismatches, recorded, replayed);
+    }
+
+    private Map<String, String> operationOf(JournalEntry entry) {
+        Map<String, String> operation = new HashMap<>(entry.operation());
+        overrides.forEach((name, value) -> {
+            if (operation.containsKey(name) || (JournalEntry.PASSWORD.equals(name) && "login".equals(entry.getD()))) {
+                operation.put(name, value);
+            }
+        });
+        return operation;
+    }
+}
@@ -0,0 +1,121 @@
+package dev.dae.software.journal;
+
+import dev.dae.software.metrics.LatencyHistogram;
+import dev.dae.software.metrics.OperationLatencies;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 重播結果: 與紀錄相比的狀態碼/result 差異與各操作延遲
+ *
+ * @author Ben
+ */
+public class ReplayReport {
+
+    private final String endpoint;
+    private final double speedup;
+    private final int entries;
+    private final long recordedMicros;
+    private final long elapsedNanos;
+    private final long transportErrors;
+    private final List<String> mismatches;
+    private final OperationLatencies recorded;
+    private final OperationLatencies replayed;
+
+    ReplayReport(String endpoint, double speedup, int entries, long recordedMicros, long elapsedNanos, long transportErrors, List<String> mismatches,
+            OperationLatencies recorded, OperationLatencies replayed) {
+        this.endpoint = endpoint;
+        this.speedup = speedup;
+        this.entries = entries;
+        this.recordedMicros = recordedMicros;
+        this.elapsedNanos = elapsedNanos;
+        this.transportErrors = transportErrors;
+        this.mismatches = Collections.unmodifiableList(mismatches);
+        this.recorded = recorded;
+        this.replayed = replayed;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return 加速倍率, 0 表示不等待紀錄的間隔
+     */
+    public double getSpeedup() {
+        return speedup;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return 連線失敗或逾時的次數
+     */
+    public long getTransportErrors() {
+        return transportErrors;
+    }
+
+    /**
+     * @return 狀態碼或 result 與紀錄不同的操作
+     */
+    public List<String> getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * @return 紀錄中的回應時間
+     */
+    public OperationLatencies getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * @return 重播的回應時間, 自排定的送出時間起算
+     */
+    public OperationLatencies getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * @return 一行 JSON, 時間以毫秒為單位
+     */
+    public String toJson() {
+        JsonArrayBuilder mismatchArray = Json.createArrayBuilder();
+        mismatches.forEach(mismatchArray::add);
+        return Json.createObjectBuilder()
+                .add("endpoint", endpoint)
+                .add("speedup", speedup)
+                .add("entries", entries)
+                .add("recorded", recordedMicros / 1e3)
+                .add("elapsed", elapsedNanos / 1e6)
+                .add("transport-errors", transportErrors)
+                .add("mismatches", mismatchArray)
+                .add("recorded-latency", recorded.toJson())
+                .add("replayed-latency", replayed.toJson())
+                .build().toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("replay %d entries to %s, speedup = %s, recorded = %.2f s, elapsed = %.2f s, transport errors = %d, mismatches = %d%n",
+                entries, endpoint, speedup > 0 ? String.format("%.1fx", speedup) : "none", recordedMicros / 1e6, elapsedNanos / 1e9, transportErrors, mismatches.size()));
+        builder.append(String.format("%-28s %8s %12s %12s %12s %12s%n", "operation (ms)", "count", "rec p50", "replay p50", "rec p99", "replay p99"));
+        replayed.getHistograms().forEach((key, histogram) -> {
+            LatencyHistogram original = recorded.histogram(key);
+            builder.append(String.format("%-28s %8d %12.2f %12.2f %12.2f %12.2f%n", key, histogram.getCount(),
+                    original.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(50) / 1e6,
+                    original.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99) / 1e6));
+        });
+        mismatches.forEach(mismatch -> builder.append("  ").append(mismatch).append(System.lineSeparator()));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package dev.dae.software.journal;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import dev.dae.software.util.ThreadPools;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 只附加寫入的操作紀錄檔, 每行一筆 JournalEntry (NDJSON); 紀錄放入有界佇列後由背景執行緒批次寫入, 寫入端不等待磁碟; 寫入失敗只記錄 log, 不影響請求
+ *
+ * @author Ben
+ */
+public class SessionJournal implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionJournal.class.getName());
+    private final Path path;
+    private final long startNanos = System.nanoTime();
+    private final BlockingQueue<JournalEntry> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread journalWriter;
+    private final Thread shutdownHook = new Thread(this::close, "session-journal-shutdown");
+    private volatile boolean closed;
+    private BufferedWriter writer;
+
+    /**
+     * @param path 紀錄檔路徑, 已存在時附加在後
+     */
+    public SessionJournal(Path path) {
+        this(path, 8192);
+    }
+
+    /**
+     * @param path 紀錄檔路徑, 已存在時附加在後
+     * @param queueCapacity 尚未寫入的紀錄數上限, 超過時捨棄
+     */
+    public SessionJournal(Path path, int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.path = Objects.requireNonNull(path);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.journalWriter = ThreadPools.daemonThreadFactory("session-journal").newThread(this::writeLoop);
+        journalWriter.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return 自紀錄開始的時間 (微秒), 作為 JournalEntry 的 offsetMicros
+     */
+    public long offsetMicros() {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * 寫入一筆紀錄
+     *
+     * @param sentAtNanos 送出時間 (System.nanoTime)
+     * @param host 主機
+     * @param operation 服務參數, 密碼不會寫入
+     * @param status HTTP 狀態碼, 連線失敗時為 -1
+     * @param bytes 回應內容長度
+     * @param result 回應的 result
+     * @param error 連線失敗的例外名稱, 成功時為空字串
+     */
+    public void record(long sentAtNanos, String host, Map<String, String> operation, int status, long bytes, boolean result, String error) {
+        long now = System.nanoTime();
+        append(new JournalEntry((sentAtNanos - startNanos) / 1000, host, operation, status, (now - sentAtNanos) / 1000, bytes, result, error));
+    }
+
+    /**
+     * 放入寫入佇列, 不等待磁碟
+     *
+     * @param entry 紀錄
+     */
+    public void append(JournalEntry entry) {
+        if (closed || !queue.offer(entry)) {
+            // 紀錄檔寫入跟不上時捨棄, 不讓請求等待磁碟
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return 因寫入跟不上或已關閉而捨棄的紀錄數
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void writeLoop() {
+        List<JournalEntry> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                JournalEntry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<JournalEntry> batch) {
+        try {
+            if (Objects.isNull(writer)) {
+                Path directory = path.toAbsolutePath().getParent();
+                if (Objects.nonNull(directory)) {
+                    Files.createDirectories(directory);
+                }
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (JournalEntry entry : batch) {
+                writer.write(entry.toJson());
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            dropped.add(batch.size());
+            LOGGER.log(Level.WARNING, String.format("cannot append to journal %s", path), ex);
+        }
+    }
+
+    /**
+     * 讀取紀錄檔, 依送出時間排序; 無法解析的行會被略過
+     *
+     * @param path 紀錄檔路徑
+     * @return 紀錄
+     * @throws IOException 讀取失敗
+     */
+    public static List<JournalEntry> read(Path path) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while (Objects.nonNull(line = reader.readLine())) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+                    entries.add(JournalEntry.fromJson(jsonReader.readObject()));
+                } catch (JsonException | NullPointerException | ClassCastException ex) {
+                    LOGGER.log(Level.WARNING, String.format("skip unreadable journal line in %s: %s", path, line), ex);
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(JournalEntry::offsetMicros));
+        return entries;
+    }
+
+    /**
+     * 寫入佇列中剩餘的紀錄後停止背景執行緒
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            journalWriter.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (Objects.nonNull(writer)) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, null, ex);
+            }
+            writer = null;
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                // JVM 正在關閉, shutdown hook 會自行執行
+            }
+        }
+    }
+}
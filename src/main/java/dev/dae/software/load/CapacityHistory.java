@@ -0,0 +1,117 @@
+package dev.dae.software.load;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 各目標 (HostEnvironment) 歷次容量搜尋的膝點, 每行一筆 (NDJSON), 用於追蹤各版本後端容量的變化
+ *
+ * @author Ben
+ */
+public class CapacityHistory {
+
+    private final Path path;
+
+    /**
+     * @param path 紀錄檔路徑, 已存在時附加在後
+     */
+    public CapacityHistory(Path path) {
+        this.path = Objects.requireNonNull(path);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @param report 容量搜尋結果
+     * @param release 後端版本標籤, 可為空字串
+     * @return 寫入的紀錄
+     * @throws IOException 寫入失敗
+     */
+    public synchronized JsonObject append(CapacityReport report, String release) throws IOException {
+        JsonObject entry = Json.createObjectBuilder(report.toSummaryJson())
+                .add("time", Instant.now().toString())
+                .add("release", release)
+                .build();
+        Path directory = path.toAbsolutePath().getParent();
+        if (Objects.nonNull(directory)) {
+            Files.createDirectories(directory);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(entry.toString());
+            writer.newLine();
+        }
+        return entry;
+    }
+
+    /**
+     * @param target 目標名稱, 與 CapacityReport 的 label 相同
+     * @return 該目標的紀錄, 由舊到新; 檔案不存在時為空清單, 無法解析的行略過
+     * @throws IOException 讀取失敗
+     */
+    public synchronized List<JsonObject> read(String target) throws IOException {
+        List<JsonObject> entries = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while (Objects.nonNull(line = reader.readLine())) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try (JsonReader jsonReader = Json.createReader(new StringReader(line))) {
+                    JsonObject entry = jsonReader.readObject();
+                    if (target.equals(entry.getString("target", ""))) {
+                        entries.add(entry);
+                    }
+                } catch (JsonException | ClassCastException ex) {
+                    // 略過損壞的行
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @param target 目標名稱
+     * @return 該目標最近一筆紀錄
+     * @throws IOException 讀取失敗
+     */
+    public Optional<JsonObject> last(String target) throws IOException {
+        List<JsonObject> entries = read(target);
+        return entries.isEmpty() ? Optional.empty() : Optional.of(entries.get(entries.size() - 1));
+    }
+
+    /**
+     * @param previous 前一筆紀錄
+     * @param current 這次的紀錄
+     * @return 膝點吞吐量與併發的變化, 例如 knee 120.0 -> 135.2 req/s (+12.7%), concurrency 16 -> 18 since release 1.4 (2026-10-01T...)
+     */
+    public static String describeChange(JsonObject previous, JsonObject current) {
+        if (!previous.containsKey("knee-throughput") || !current.containsKey("knee-throughput")) {
+            return String.format("no knee to compare with %s", previous.getString("time", ""));
+        }
+        double before = previous.getJsonNumber("knee-throughput").doubleValue();
+        double after = current.getJsonNumber("knee-throughput").doubleValue();
+        String release = previous.getString("release", "");
+        return String.format("knee %.1f -> %.1f req/s (%+.1f%%), concurrency %d -> %d since %s(%s)", before, after, before == 0 ? 0 : (after - before) * 100 / before,
+                previous.getInt("knee-concurrency", 0), current.getInt("knee-concurrency", 0), release.isEmpty() ? "" : String.format("release %s ", release), previous.getString("time", ""));
+    }
+}
@@ -0,0 +1,134 @@
+package dev.dae.software.load;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * CapacitySearch 的結果: 每一步的併發, 吞吐量與延遲, 以及膝點
+ *
+ * @author Ben
+ */
+public class CapacityReport {
+
+    private final String label;
+    private final long targetP99Nanos;
+    private final double maxErrorRate;
+    private final long windowNanos;
+    private final List<Step> steps;
+    private final String stopReason;
+
+    /**
+     * @param concurrency 虛擬使用者數量
+     * @param requests 請求數
+     * @param throughput 吞吐量 (次/秒)
+     * @param p50Nanos 回應時間中位數
+     * @param p99Nanos 回應時間 p99
+     * @param errorRate 過載錯誤比例 (連線失敗/逾時與 HTTP 錯誤)
+     * @param healthy p99 與錯誤比例是否都在上限內
+     */
+    public record Step(int concurrency, long requests, double throughput, long p50Nanos, long p99Nanos, double errorRate, boolean healthy) {
+
+        /**
+         * @return 吞吐量 / p99 (秒), 越大表示在相同延遲下處理越多請求
+         */
+        public double power() {
+            return p99Nanos == 0 ? 0 : throughput / (p99Nanos / 1e9);
+        }
+    }
+
+    CapacityReport(String label, long targetP99Nanos, double maxErrorRate, long windowNanos, List<Step> steps, String stopReason) {
+        this.label = label;
+        this.targetP99Nanos = targetP99Nanos;
+        this.maxErrorRate = maxErrorRate;
+        this.windowNanos = windowNanos;
+        this.steps = Collections.unmodifiableList(steps);
+        this.stopReason = stopReason;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return 未超標步驟中 power 最大者, 即延遲開始隨併發上升的位置; 沒有未超標的步驟時為 empty
+     */
+    public Optional<Step> getKnee() {
+        return steps.stream().filter(Step::healthy).max(Comparator.comparingDouble(Step::power));
+    }
+
+    /**
+     * @return 未超標步驟中吞吐量最大者, 即可持續的最大吞吐量
+     */
+    public Optional<Step> getMaxSustainable() {
+        return steps.stream().filter(Step::healthy).max(Comparator.comparingDouble(Step::throughput));
+    }
+
+    /**
+     * @return 膝點與最大吞吐量摘要, 供 CapacityHistory 保存
+     */
+    public JsonObject toSummaryJson() {
+        JsonObjectBuilder builder = Json.createObjectBuilder()
+                .add("target", label)
+                .add("target-p99", targetP99Nanos / 1e6)
+                .add("max-error-rate", maxErrorRate);
+        getKnee().ifPresent(knee -> builder
+                .add("knee-concurrency", knee.concurrency())
+                .add("knee-throughput", knee.throughput())
+                .add("knee-p99", knee.p99Nanos() / 1e6));
+        getMaxSustainable().ifPresent(max -> builder
+                .add("max-concurrency", max.concurrency())
+                .add("max-throughput", max.throughput())
+                .add("max-p99", max.p99Nanos() / 1e6));
+        return builder.build();
+    }
+
+    /**
+     * @return 一行 JSON, 時間以毫秒為單位
+     */
+    public String toJson() {
+        JsonArrayBuilder stepArray = Json.createArrayBuilder();
+        steps.forEach(step -> stepArray.add(Json.createObjectBuilder()
+                .add("concurrency", step.concurrency())
+                .add("requests", step.requests())
+                .add("throughput", step.throughput())
+                .add("p50", step.p50Nanos() / 1e6)
+                .add("p99", step.p99Nanos() / 1e6)
+                .add("error-rate", step.errorRate())
+                .add("healthy", step.healthy())));
+        return Json.createObjectBuilder(toSummaryJson())
+                .add("window", windowNanos / 1e6)
+                .add("stop", stopReason)
+                .add("steps", stepArray)
+                .build().toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("capacity %s: target p99 = %.0f ms, max error rate = %.2f%%, window = %.1f s, %d steps, %s%n",
+                label, targetP99Nanos / 1e6, maxErrorRate * 100, windowNanos / 1e9, steps.size(), stopReason));
+        builder.append(String.format("%12s %10s %12s %10s %10s %10s %8s%n", "concurrency", "requests", "req/s", "p50 ms", "p99 ms", "errors", "healthy"));
+        steps.forEach(step -> builder.append(String.format("%12d %10d %12.1f %10.2f %10.2f %9.2f%% %8s%n", step.concurrency(), step.requests(), step.throughput(),
+                step.p50Nanos() / 1e6, step.p99Nanos() / 1e6, step.errorRate() * 100, step.healthy() ? "yes" : "no")));
+        getKnee().ifPresentOrElse(
+                knee -> builder.append(String.format("knee: concurrency = %d, %.1f req/s, p99 = %.2f ms%n", knee.concurrency(), knee.throughput(), knee.p99Nanos() / 1e6)),
+                () -> builder.append(String.format("knee: none, every step exceeded the limits%n")));
+        getMaxSustainable().ifPresent(max -> builder.append(String.format("max sustainable: concurrency = %d, %.1f req/s, p99 = %.2f ms%n",
+                max.concurrency(), max.throughput(), max.p99Nanos() / 1e6)));
+        return builder.toString();
+    }
+}
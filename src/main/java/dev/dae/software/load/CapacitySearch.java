@@ -0,0 +1,132 @@
+package dev.dae.software.load;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 自動尋找主機可持續的最大吞吐量: 以 AIMD 調整固定併發 (closed model) 的虛擬使用者數量
+ * <p>
+ * 先以起始併發執行一個不計入的暖機視窗 (登入, 建立連線, JIT), 之後每一步以目前的併發執行一個量測視窗; p99 回應時間與過載錯誤 (連線失敗/逾時與 HTTP 錯誤, 不含 result 為 false) 都在上限內時增加併發, 起初加倍 (slow start), 第一次超標後改為加上 increase; 超標時乘上 decrease. 減少 maxDecreases 次, 或在 maxConcurrency 仍未超標時結束. 膝點取未超標步驟中 power (吞吐量 / p99) 最大者, 再往上加併發只增加延遲
+ *
+ * @author Ben
+ */
+public class CapacitySearch {
+
+    private final Probe probe;
+    private final Duration targetP99;
+    private final double maxErrorRate;
+    private final Duration window;
+    private int increase = 2;
+    private double decrease = 0.7;
+    private int maxDecreases = 3;
+
+    /**
+     * 以指定的併發執行一個量測視窗
+     */
+    @FunctionalInterface
+    public interface Probe {
+
+        /**
+         * @param concurrency 虛擬使用者數量
+         * @param window 量測時間
+         * @return 該視窗的測試結果
+         */
+        LoadReport measure(int concurrency, Duration window);
+    }
+
+    /**
+     * @param generator 壓力測試產生器, 以 runFixedConcurrency 量測
+     * @param targetP99 p99 回應時間上限
+     * @param maxErrorRate 過載錯誤比例上限 (0..1)
+     * @param window 每一步的量測時間
+     */
+    public CapacitySearch(LoadGenerator generator, Duration targetP99, double maxErrorRate, Duration window) {
+        this(generator::runFixedConcurrency, targetP99, maxErrorRate, window);
+    }
+
+    /**
+     * @param probe 量測方式
+     * @param targetP99 p99 回應時間上限
+     * @param maxErrorRate 過載錯誤比例上限 (0..1)
+     * @param window 每一步的量測時間
+     */
+    public CapacitySearch(Probe probe, Duration targetP99, double maxErrorRate, Duration window) {
+        if (targetP99.isNegative() || targetP99.isZero() || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("targetP99 and window must be positive");
+        }
+        if (maxErrorRate < 0 || maxErrorRate > 1) {
+            throw new IllegalArgumentException("maxErrorRate must be between 0 and 1");
+        }
+        this.probe = Objects.requireNonNull(probe);
+        this.targetP99 = targetP99;
+        this.maxErrorRate = maxErrorRate;
+        this.window = window;
+    }
+
+    /**
+     * @param increase slow start 之後每一步增加的併發 (預設 2)
+     * @param decrease 超標時併發乘上的比例 (預設 0.7)
+     * @param maxDecreases 減少幾次後結束 (預設 3)
+     */
+    public void setAdjustment(int increase, double decrease, int maxDecreases) {
+        if (increase <= 0 || decrease <= 0 || decrease >= 1 || maxDecreases <= 0) {
+            throw new IllegalArgumentException("increase and maxDecreases must be positive and decrease must be between 0 and 1");
+        }
+        this.increase = increase;
+        this.decrease = decrease;
+        this.maxDecreases = maxDecreases;
+    }
+
+    /**
+     * @param label 報告用的目標名稱, 例如 HostEnvironment 名稱或主機
+     * @param initialConcurrency 起始併發
+     * @param maxConcurrency 併發上限
+     * @param maxSteps 最多量測幾步
+     * @return 搜尋結果
+     */
+    public CapacityReport run(String label, int initialConcurrency, int maxConcurrency, int maxSteps) {
+        if (initialConcurrency <= 0 || maxConcurrency < initialConcurrency || maxSteps <= 0) {
+            throw new IllegalArgumentException("expected 0 < initialConcurrency <= maxConcurrency and maxSteps > 0");
+        }
+        List<CapacityReport.Step> steps = new ArrayList<>();
+        int concurrency = initialConcurrency;
+        boolean slowStart = true;
+        int decreases = 0;
+        String stopReason = "step limit";
+        probe.measure(initialConcurrency, window);
+        for (int i = 0; i < maxSteps && !Thread.currentThread().isInterrupted(); i++) {
+            CapacityReport.Step step = measure(concurrency);
+            steps.add(step);
+            if (step.healthy()) {
+                if (concurrency == maxConcurrency) {
+                    stopReason = "max concurrency reached without exceeding limits";
+                    break;
+                }
+                concurrency = Math.min(maxConcurrency, slowStart ? concurrency * 2 : concurrency + increase);
+            } else {
+                slowStart = false;
+                if (++decreases >= maxDecreases) {
+                    stopReason = String.format("converged after %d decreases", decreases);
+                    break;
+                }
+                concurrency = Math.max(1, Math.min(concurrency - 1, (int) (concurrency * decrease)));
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            stopReason = "interrupted";
+        }
+        return new CapacityReport(label, targetP99.toNanos(), maxErrorRate, window.toNanos(), steps, stopReason);
+    }
+
+    private CapacityReport.Step measure(int concurrency) {
+        LoadReport report = probe.measure(concurrency, window);
+        long requests = report.getRequests();
+        double overloadRate = requests == 0 ? 1 : (double) (report.getTransportErrors() + report.getHttpErrors()) / requests;
+        long p50 = report.getResponseTimes().total().getValueAtPercentile(50);
+        long p99 = report.getResponseTimes().total().getValueAtPercentile(99);
+        boolean healthy = requests > 0 && p99 <= targetP99.toNanos() && overloadRate <= maxErrorRate;
+        return new CapacityReport.Step(concurrency, requests, report.getThroughput(), p50, p99, overloadRate, healthy);
+    }
+}
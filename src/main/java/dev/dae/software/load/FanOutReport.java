@@ -0,0 +1,220 @@
+package dev.dae.software.load;
+
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.metrics.LatencyHistogram;
+import dev.dae.software.metrics.OperationLatencies;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * FanOutSweep 的結果: device-binding/list 時間, 每個電表每個查詢的結果與延遲, 以及整體 fan-out 時間
+ *
+ * @author Ben
+ */
+public class FanOutReport {
+
+    private final String username;
+    private final String endpoint;
+    private final int concurrency;
+    private final int devices;
+    private final long listNanos;
+    private final long fanOutNanos;
+    private final long elapsedNanos;
+    private final String cancelReason;
+    private final List<DeviceResult> results;
+    private final OperationLatencies latencies = new OperationLatencies();
+    private final EnumMap<Outcome, Integer> outcomes = new EnumMap<>(Outcome.class);
+
+    /**
+     * 單一查詢的結果
+     */
+    public enum Outcome {
+        OK,
+        /**
+         * HTTP 狀態碼 400 以上
+         */
+        HTTP_ERROR,
+        /**
+         * result 為 false
+         */
+        API_ERROR,
+        /**
+         * 連線失敗或逾時
+         */
+        TRANSPORT_ERROR,
+        /**
+         * 已取消或未送出
+         */
+        CANCELLED
+    }
+
+    /**
+     * @param deviceCode 電表代碼
+     * @param channelName 迴路名稱
+     * @param operation 操作
+     * @param outcome 結果
+     * @param statusCode HTTP 狀態碼, 沒有回應時為 -1
+     * @param bytes 回應長度
+     * @param latencyNanos 自送出到收到回應或取消的時間, 未送出時為 0
+     * @param error 連線失敗的例外類別名稱
+     */
+    public record DeviceResult(String deviceCode, String channelName, TenantOperation operation, Outcome outcome, int statusCode, int bytes, long latencyNanos, String error) {
+    }
+
+    FanOutReport(String username, String endpoint, int concurrency, int devices, long listNanos, long fanOutNanos, long elapsedNanos, String cancelReason,
+            List<DeviceResult> results) {
+        this.username = username;
+        this.endpoint = endpoint;
+        this.concurrency = concurrency;
+        this.devices = devices;
+        this.listNanos = listNanos;
+        this.fanOutNanos = fanOutNanos;
+        this.elapsedNanos = elapsedNanos;
+        this.cancelReason = cancelReason;
+        this.results = Collections.unmodifiableList(results);
+        latencies.record(TenantOperation.DEVICE_BINDING_LIST, listNanos);
+        for (DeviceResult result : results) {
+            outcomes.merge(result.outcome(), 1, Integer::sum);
+            if (result.outcome() != Outcome.CANCELLED) {
+                latencies.record(result.operation(), result.latencyNanos());
+            }
+        }
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return device-binding/list 回傳的電表數
+     */
+    public int getDevices() {
+        return devices;
+    }
+
+    public long getListNanos() {
+        return listNanos;
+    }
+
+    /**
+     * @return 自送出第一個電表查詢到所有查詢結束的時間
+     */
+    public long getFanOutNanos() {
+        return fanOutNanos;
+    }
+
+    /**
+     * @return 含 device-binding/list 的總時間, 即 App 首頁完整載入的時間
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return 取消原因, 未取消時為空字串
+     */
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    public List<DeviceResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return 各操作的延遲, 含 device-binding/list
+     */
+    public OperationLatencies getLatencies() {
+        return latencies;
+    }
+
+    public int getCount(Outcome outcome) {
+        return outcomes.getOrDefault(outcome, 0);
+    }
+
+    /**
+     * @return 不是 OK 的查詢比例
+     */
+    public double getErrorRate() {
+        return results.isEmpty() ? 0 : (results.size() - getCount(Outcome.OK)) / (double) results.size();
+    }
+
+    /**
+     * @return 電表查詢延遲總和除以 fan-out 時間, 即實際平均同時進行的請求數
+     */
+    public double getEffectiveParallelism() {
+        long sum = results.stream().mapToLong(DeviceResult::latencyNanos).sum();
+        return fanOutNanos <= 0 ? 0 : (double) sum / fanOutNanos;
+    }
+
+    /**
+     * @return 最慢的電表查詢
+     */
+    public Optional<DeviceResult> getSlowest() {
+        return results.stream().filter(result -> result.outcome() != Outcome.CANCELLED).max(Comparator.comparingLong(DeviceResult::latencyNanos));
+    }
+
+    /**
+     * @return 一行 JSON, 時間以毫秒為單位
+     */
+    public String toJson() {
+        JsonArrayBuilder resultArray = Json.createArrayBuilder();
+        results.forEach(result -> resultArray.add(Json.createObjectBuilder()
+                .add("device-code", result.deviceCode())
+                .add("channel-name", result.channelName())
+                .add("operation", result.operation().getKey())
+                .add("outcome", result.outcome().name())
+                .add("status", result.statusCode())
+                .add("bytes", result.bytes())
+                .add("latency", result.latencyNanos() / 1e6)
+                .add("error", result.error())));
+        JsonObjectBuilder outcomeObject = Json.createObjectBuilder();
+        outcomes.forEach((outcome, count) -> outcomeObject.add(outcome.name(), count));
+        return Json.createObjectBuilder()
+                .add("endpoint", endpoint)
+                .add("username", username)
+                .add("concurrency", concurrency)
+                .add("devices", devices)
+                .add("requests", results.size())
+                .add("list", listNanos / 1e6)
+                .add("fan-out", fanOutNanos / 1e6)
+                .add("elapsed", elapsedNanos / 1e6)
+                .add("effective-parallelism", getEffectiveParallelism())
+                .add("error-rate", getErrorRate())
+                .add("cancelled", cancelReason)
+                .add("outcomes", outcomeObject)
+                .add("latency", latencies.toJson())
+                .add("results", resultArray)
+                .build().toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("fan-out %s on %s: %d devices, %d requests, concurrency = %d, list = %.2f ms, fan-out = %.2f ms, elapsed = %.2f ms, effective parallelism = %.1f%n",
+                username, endpoint, devices, results.size(), concurrency, listNanos / 1e6, fanOutNanos / 1e6, elapsedNanos / 1e6, getEffectiveParallelism()));
+        builder.append(String.format("  outcomes: %s%s%n", outcomes, cancelReason.isEmpty() ? "" : String.format(", cancelled: %s", cancelReason)));
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.getHistograms().entrySet()) {
+            builder.append(String.format("  %-28s %s%n", entry.getKey(), entry.getValue().summary()));
+        }
+        getSlowest().ifPresent(slowest -> builder.append(String.format("  slowest: %s %s %s %.2f ms%n",
+                slowest.deviceCode(), slowest.channelName(), slowest.operation(), slowest.latencyNanos() / 1e6)));
+        builder.append(String.format("  %-16s %-16s %-28s %-16s %6s %10s%n", "device-code", "channel-name", "operation", "outcome", "status", "ms"));
+        for (DeviceResult result : results) {
+            builder.append(String.format("  %-16s %-16s %-28s %-16s %6d %10.2f%n", result.deviceCode(), result.channelName(), result.operation(),
+                    result.error().isEmpty() ? result.outcome() : String.format("%s (%s)", result.outcome(), result.error()), result.statusCode(), result.latencyNanos() / 1e6));
+        }
+        return builder.toString();
+    }
+}
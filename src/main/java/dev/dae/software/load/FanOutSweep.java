@@ -0,0 +1,252 @@
+package dev.dae.software.load;
+
+import dev.dae.software.api.ApiResponse;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 模擬 App 首頁對後端的 fan-out: 先取得 device-binding/list, 再同時對每個綁定的電表查詢用電資料
+ * <p>
+ * 同時進行中的請求不超過 concurrency; 逾時, 呼叫端執行緒被中斷, 或 failFast 且有請求失敗時取消所有進行中的請求 (HttpClient 會中止已取消的交換) 並不再送出新請求, sweep 回傳前所有請求都已結束
+ *
+ * @author Ben
+ */
+public class FanOutSweep {
+
+    /**
+     * 預設對每個電表查詢的操作
+     */
+    public static final List<TenantOperation> DEFAULT_OPERATIONS = List.of(TenantOperation.DATA_CONSUMPTION, TenantOperation.DATA_CHANNELS_CONSUMPTION);
+    private final TenantApiClient api;
+    private final int concurrency;
+    private final Duration timeout;
+    private final boolean failFast;
+
+    /**
+     * @param api 房客 API
+     * @param concurrency 同時進行中的電表查詢上限
+     * @param timeout 整次 sweep (含 device-binding/list) 的時間上限
+     * @param failFast 任一查詢失敗時是否取消其餘查詢
+     */
+    public FanOutSweep(TenantApiClient api, int concurrency, Duration timeout, boolean failFast) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.api = Objects.requireNonNull(api);
+        this.concurrency = concurrency;
+        this.timeout = Objects.requireNonNull(timeout);
+        this.failFast = failFast;
+    }
+
+    /**
+     * @param username 房客帳號
+     * @param sessionId 已登入的 PHPSESSID
+     * @param operations 對每個電表查詢的操作
+     * @return 彙總結果
+     * @throws IOException device-binding/list 連線失敗, 逾時, HTTP 錯誤, result 為 false 或回應不是 JSON
+     * @throws InterruptedException 等待時被中斷, 此時進行中的請求已取消
+     */
+    public FanOutReport sweep(String username, String sessionId, List<TenantOperation> operations) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        HashMap<String, String> listMap = bodyMap(TenantOperation.DEVICE_BINDING_LIST, username);
+        HttpResponse<String> listResponse = api.getClient().send(api.buildRequest(listMap, sessionId), HttpResponse.BodyHandlers.ofString());
+        long listNanos = System.nanoTime() - start;
+        List<Device> devices = parseDevices(listResponse);
+
+        List<Task> tasks = new ArrayList<>(devices.size() * operations.size());
+        for (Device device : devices) {
+            for (TenantOperation operation : operations) {
+                tasks.add(new Task(device, operation));
+            }
+        }
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicReference<String> cancelled = new AtomicReference<>("");
+        List<CompletableFuture<?>> completions = new ArrayList<>(tasks.size());
+        long fanOutStart = System.nanoTime();
+        try {
+            for (Task task : tasks) {
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    cancel(tasks, cancelled, "timeout");
+                }
+                if (!cancelled.get().isEmpty()) {
+                    break;
+                }
+                completions.add(dispatch(task, username, sessionId, permits, tasks, cancelled));
+            }
+            CompletableFuture.allOf(completions.toArray(CompletableFuture[]::new)).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            cancel(tasks, cancelled, "timeout");
+        } catch (InterruptedException ex) {
+            cancel(tasks, cancelled, "interrupted");
+            awaitQuietly(completions);
+            throw ex;
+        } catch (ExecutionException ex) {
+            // 個別結果已記錄在 Task 中
+        }
+        awaitQuietly(completions);
+        long end = System.nanoTime();
+        List<FanOutReport.DeviceResult> results = new ArrayList<>(tasks.size());
+        tasks.forEach(task -> results.add(task.result()));
+        return new FanOutReport(username, api.getEndpoint().toString(), concurrency, devices.size(), listNanos, end - fanOutStart, end - start, cancelled.get(), results);
+    }
+
+    private CompletableFuture<?> dispatch(Task task, String username, String sessionId, Semaphore permits, List<Task> tasks, AtomicReference<String> cancelled) {
+        HashMap<String, String> map = bodyMap(task.operation, username);
+        map.put("device-code", task.device.deviceCode());
+        map.put("channel-name", task.device.channelName());
+        task.startedAt = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> future;
+        try {
+            future = api.getClient().sendAsync(api.buildRequest(map, sessionId), HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException ex) {
+            future = CompletableFuture.failedFuture(ex);
+        }
+        task.future = future;
+        if (!cancelled.get().isEmpty()) {
+            // 與 cancel 同時發生時 cancel 可能沒看到這個請求
+            future.cancel(true);
+        }
+        return future.handle((response, throwable) -> {
+            permits.release();
+            task.complete(response, throwable, System.nanoTime());
+            if (failFast && task.outcome != FanOutReport.Outcome.OK && task.outcome != FanOutReport.Outcome.CANCELLED) {
+                cancel(tasks, cancelled, String.format("%s %s failed", task.operation, task.device.deviceCode()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 只記錄第一個取消原因; 取消進行中的請求, 尚未送出的請求維持 CANCELLED
+     */
+    private static void cancel(List<Task> tasks, AtomicReference<String> cancelled, String reason) {
+        if (!cancelled.compareAndSet("", reason)) {
+            return;
+        }
+        for (Task task : tasks) {
+            CompletableFuture<HttpResponse<String>> future = task.future;
+            if (Objects.nonNull(future)) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void awaitQuietly(List<CompletableFuture<?>> completions) {
+        // 取消後的 handle 立即完成, 這裡只是確保不留下仍在記錄結果的回呼
+        for (CompletableFuture<?> completion : completions) {
+            completion.exceptionally(throwable -> null).join();
+        }
+    }
+
+    private static HashMap<String, String> bodyMap(TenantOperation operation, String username) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("d", operation.getD());
+        if (Objects.nonNull(operation.getM())) {
+            map.put("m", operation.getM());
+        }
+        map.put("username", username);
+        return map;
+    }
+
+    /**
+     * @param response device-binding/list 的回應
+     * @return 綁定的電表, 略過沒有 device-code 的項目
+     * @throws IOException HTTP 錯誤, result 為 false 或回應不是 JSON
+     */
+    static List<Device> parseDevices(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() >= 400) {
+            throw new IOException(String.format("device-binding/list failed: HTTP %d", response.statusCode()));
+        }
+        JsonObject object;
+        try (JsonReader reader = Json.createReader(new StringReader(response.body()))) {
+            object = reader.readObject();
+        } catch (JsonException ex) {
+            throw new IOException("unreadable device-binding/list response", ex);
+        }
+        if (!object.getBoolean("result", true)) {
+            throw new IOException(String.format("device-binding/list failed: %s", object.getString("message", "")));
+        }
+        JsonValue data = object.get("data");
+        List<Device> devices = new ArrayList<>();
+        if (Objects.nonNull(data) && data.getValueType() == JsonValue.ValueType.ARRAY) {
+            for (JsonValue value : data.asJsonArray()) {
+                if (value.getValueType() == JsonValue.ValueType.OBJECT) {
+                    String deviceCode = value.asJsonObject().getString("device-code", "");
+                    if (!deviceCode.isEmpty()) {
+                        devices.add(new Device(deviceCode, value.asJsonObject().getString("channel-name", "")));
+                    }
+                }
+            }
+        }
+        return devices;
+    }
+
+    record Device(String deviceCode, String channelName) {
+    }
+
+    /**
+     * 一個電表的一個查詢; 結果在 HttpClient 的執行緒上寫入, 在 sweep 等待所有回呼完成後讀取
+     */
+    private static final class Task {
+
+        private final Device device;
+        private final TenantOperation operation;
+        private volatile CompletableFuture<HttpResponse<String>> future;
+        private volatile long startedAt;
+        private volatile FanOutReport.Outcome outcome = FanOutReport.Outcome.CANCELLED;
+        private volatile int statusCode = -1;
+        private volatile int bytes;
+        private volatile long latencyNanos;
+        private volatile String error = "";
+
+        Task(Device device, TenantOperation operation) {
+            this.device = device;
+            this.operation = operation;
+        }
+
+        void complete(HttpResponse<String> response, Throwable throwable, long now) {
+            latencyNanos = now - startedAt;
+            if (Objects.nonNull(response)) {
+                statusCode = response.statusCode();
+                bytes = response.body().length();
+                outcome = statusCode >= 400 ? FanOutReport.Outcome.HTTP_ERROR
+                        : !ApiResponse.readResult(response.body()) ? FanOutReport.Outcome.API_ERROR : FanOutReport.Outcome.OK;
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException && Objects.nonNull(throwable.getCause()) ? throwable.getCause() : throwable;
+            if (cause instanceof CancellationException) {
+                outcome = FanOutReport.Outcome.CANCELLED;
+            } else {
+                outcome = FanOutReport.Outcome.TRANSPORT_ERROR;
+                error = cause.getClass().getSimpleName();
+            }
+        }
+
+        FanOutReport.DeviceResult result() {
+            return new FanOutReport.DeviceResult(device.deviceCode(), device.channelName(), operation, outcome, statusCode, bytes,
+                    Objects.isNull(future) ? 0 : latencyNanos, error);
+        }
+    }
+}
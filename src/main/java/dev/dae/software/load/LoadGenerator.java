@@ -0,0 +1,379 @@
+package dev.dae.software.load;
+
+import dev.dae.software.api.ApiResponse;
+import dev.dae.software.api.RequestCoalescer;
+import dev.dae.software.api.ResponseCache;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.api.TenantProfile;
+import dev.dae.software.metrics.OperationLatencies;
+import dev.dae.software.session.SessionPool;
+import dev.dae.software.session.SessionRefresher;
+import dev.dae.software.session.TenantSession;
+import dev.dae.software.util.ThreadPools;
+import jakarta.json.JsonException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 無 UI 的房客 API 壓力測試引擎, 以多個虛擬使用者併發執行與 MainFrame 相同的服務請求
+ *
+ * @author Ben
+ */
+public class LoadGenerator {
+
+    private static final Set<String> LOGIN_DATA_FIELDS = Set.of("mqtt", "channels");
+    private final TenantApiClient api;
+    private final SessionPool sessions;
+    private final List<TenantOperation> operationMix;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder transportErrors = new LongAdder();
+    private final LongAdder httpErrors = new LongAdder();
+    private final LongAdder apiErrors = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final EnumMap<TenantOperation, LongAdder> operationCounts = new EnumMap<>(TenantOperation.class);
+    private OperationLatencies responseTimes = new OperationLatencies();
+    private OperationLatencies serviceTimes = new OperationLatencies();
+    private volatile SessionRefresher sessionRefresher;
+    private volatile ResponseCache responseCache;
+    private volatile RequestCoalescer requestCoalescer;
+
+    /**
+     * @param api 房客 API
+     * @param tenants 模擬房客
+     * @param operationMix 操作組合, 每次隨機挑選一個; 重複放入可提高權重
+     */
+    public LoadGenerator(TenantApiClient api, List<TenantProfile> tenants, List<TenantOperation> operationMix) {
+        this(api, SessionPool.of(tenants), operationMix);
+    }
+
+    /**
+     * @param api 房客 API
+     * @param sessions 房客池, 每次請求輪流挑選一位房客, 未登入或已過期時先登入
+     * @param operationMix 操作組合, 每次隨機挑選一個; 重複放入可提高權重
+     */
+    public LoadGenerator(TenantApiClient api, SessionPool sessions, List<TenantOperation> operationMix) {
+        if (sessions.size() == 0 || operationMix.isEmpty()) {
+            throw new IllegalArgumentException("sessions and operationMix must not be empty");
+        }
+        this.api = Objects.requireNonNull(api);
+        this.sessions = sessions;
+        this.operationMix = List.copyOf(operationMix);
+        for (TenantOperation operation : TenantOperation.values()) {
+            operationCounts.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * 登入後交由 SessionRefresher 在到期前重新登入, 通常以 new SessionRefresher(generator::login, 0.75, 0.9) 建立
+     *
+     * @param sessionRefresher SessionRefresher 物件, null 時只在到期後才重新登入
+     */
+    public void setSessionRefresher(SessionRefresher sessionRefresher) {
+        this.sessionRefresher = sessionRefresher;
+    }
+
+    /**
+     * 唯讀操作先查詢快取, 命中時不送出請求, 只計入 {@link LoadReport#getCacheHits()}; 寫入操作與登出後使同一房客的快取失效
+     *
+     * @param responseCache ResponseCache 物件, null 時每次都送出請求
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * 同一房客同時送出的相同查詢只送出一個請求, 其餘等待者共用回應; 等待者只記錄回應時間, 計入 {@link LoadReport#getCoalesced()}
+     *
+     * @param requestCoalescer RequestCoalescer 物件, null 時每次都送出請求
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * 固定併發 (closed model): 每個虛擬使用者收到回應後立即送出下一個請求
+     *
+     * @param users 虛擬使用者數量
+     * @param duration 執行時間
+     * @return 測試結果
+     */
+    public LoadReport runFixedConcurrency(int users, Duration duration) {
+        checkUsers(users);
+        reset();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        ExecutorService executor = ThreadPools.newPerTaskExecutor("load-user");
+        for (int i = 0; i < users; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                    execute(nextOperation(), -1);
+                }
+            });
+        }
+        awaitTermination(executor, duration);
+        return report("fixed-concurrency", users, 0, System.nanoTime() - start);
+    }
+
+    /**
+     * 固定速率 (open model): 依排定時間送出請求, 不等待前一個請求完成
+     *
+     * @param requestsPerSecond 目標請求速率
+     * @param users 報告用的虛擬使用者數量, 請求由房客池輪流分配
+     * @param duration 執行時間
+     * @return 測試結果
+     */
+    public LoadReport runFixedRate(double requestsPerSecond, int users, Duration duration) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be positive");
+        }
+        checkUsers(users);
+        reset();
+        long intervalNanos = (long) (1e9 / requestsPerSecond);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        ExecutorService executor = ThreadPools.newPerTaskExecutor("load-user");
+        for (long i = 0;; i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= deadline) {
+                break;
+            }
+            long delay = intendedStart - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            TenantOperation operation = nextOperation();
+            executor.execute(() -> execute(operation, intendedStart));
+        }
+        awaitTermination(executor, duration);
+        return report("fixed-rate", users, requestsPerSecond, System.nanoTime() - start);
+    }
+
+    private void reset() {
+        requests.reset();
+        transportErrors.reset();
+        httpErrors.reset();
+        apiErrors.reset();
+        cacheHits.reset();
+        coalesced.reset();
+        operationCounts.values().forEach(LongAdder::reset);
+        responseTimes = new OperationLatencies();
+        serviceTimes = new OperationLatencies();
+    }
+
+    private void checkUsers(int users) {
+        if (users <= 0) {
+            throw new IllegalArgumentException("users must be positive");
+        }
+    }
+
+    private TenantOperation nextOperation() {
+        return operationMix.get(ThreadLocalRandom.current().nextInt(operationMix.size()));
+    }
+
+    private void awaitTermination(ExecutorService executor, Duration duration) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(duration.toMillis() + api.getRequestTimeout().toMillis() * 2, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private LoadReport report(String mode, int users, double targetRate, long elapsedNanos) {
+        EnumMap<TenantOperation, Long> counts = new EnumMap<>(TenantOperation.class);
+        operationCounts.forEach((operation, count) -> {
+            if (count.sum() > 0) {
+                counts.put(operation, count.sum());
+            }
+        });
+        return new LoadReport(mode, users, targetRate, elapsedNanos, requests.sum(), transportErrors.sum(), httpErrors.sum(), apiErrors.sum(), cacheHits.sum(), coalesced.sum(), counts, responseTimes, serviceTimes);
+    }
+
+    /**
+     * 執行一次請求並累計結果
+     * <p>
+     * 回應時間由排定的送出時間起算, 固定速率模式下送出被延後的時間也計入, 避免 coordinated omission; 服務時間僅計實際送出到收到回應
+     *
+     * @param operation 操作
+     * @param profile 房客參數
+     * @param sessionId PHPSESSID
+     * @param intendedStart 排定的送出時間 (System.nanoTime)
+     * @return HTTP 回應, 連線失敗時為 null
+     */
+    private HttpResponse<String> send(TenantOperation operation, TenantProfile profile, String sessionId, long intendedStart) {
+        RequestCoalescer coalescer = requestCoalescer;
+        if (Objects.isNull(coalescer) || !operation.isReadOnly()) {
+            return sendRequest(operation, profile, sessionId, intendedStart);
+        }
+        long start = System.nanoTime();
+        boolean[] leader = {false};
+        try {
+            HttpResponse<String> response = coalescer.send(api.getEndpoint(), sessionId, operation.bodyMap(profile), () -> {
+                leader[0] = true;
+                return sendRequest(operation, profile, sessionId, intendedStart);
+            });
+            if (!leader[0]) {
+                coalesced.increment();
+                record(operation, intendedStart, start);
+            }
+            return response;
+        } catch (IOException ex) {
+            // 合併的請求失敗, 錯誤已由送出請求的執行緒計入
+            coalesced.increment();
+            record(operation, intendedStart, start);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * 送出請求並累計結果, 連線失敗不拋出例外
+     *
+     * @param operation 操作
+     * @param profile 房客參數
+     * @param sessionId PHPSESSID
+     * @param intendedStart 排定的送出時間 (System.nanoTime)
+     * @return HTTP 回應, 連線失敗時為 null
+     */
+    private HttpResponse<String> sendRequest(TenantOperation operation, TenantProfile profile, String sessionId, long intendedStart) {
+        requests.increment();
+        operationCounts.get(operation).increment();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = api.getClient().send(api.template(operation, profile).build(profile, sessionId), HttpResponse.BodyHandlers.ofString());
+            record(operation, intendedStart, start);
+            if (response.statusCode() >= 400) {
+                httpErrors.increment();
+            } else if (!ApiResponse.readResult(response.body())) {
+                apiErrors.increment();
+            }
+            return response;
+        } catch (IOException ex) {
+            record(operation, intendedStart, start);
+            transportErrors.increment();
+        } catch (InterruptedException ex) {
+            transportErrors.increment();
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private void record(TenantOperation operation, long intendedStart, long start) {
+        long end = System.nanoTime();
+        responseTimes.record(operation, end - intendedStart);
+        serviceTimes.record(operation, end - start);
+    }
+
+    /**
+     * 房客尚未登入, 或 PHPSESSID 在請求逾時內就會過期時先登入, 不以即將失效的 Cookie 送出請求; 同一房客同時只有一個執行緒登入
+     *
+     * @param session 房客登入狀態
+     */
+    private void ensureSession(TenantSession session) {
+        long margin = api.getRequestTimeout().toMillis();
+        if (session.isActive(System.currentTimeMillis() + margin)) {
+            return;
+        }
+        synchronized (session) {
+            if (session.isActive(System.currentTimeMillis() + margin)) {
+                return;
+            }
+            if (login(session)) {
+                SessionRefresher refresher = sessionRefresher;
+                if (Objects.nonNull(refresher)) {
+                    refresher.track(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * 登入並更新房客的 Cookie 與登入資料
+     *
+     * @param session 房客登入狀態
+     * @return 是否取得有效的 PHPSESSID
+     */
+    public boolean login(TenantSession session) {
+        synchronized (session) {
+            TenantSession.SessionCookie previous = session.getCookie();
+            HttpResponse<String> response = send(TenantOperation.LOGIN, session.getProfile(), "", System.nanoTime());
+            if (Objects.isNull(response)) {
+                Logger.getLogger(LoadGenerator.class.getName()).log(Level.FINE, "login failed for {0}", session.getUsername());
+                return false;
+            }
+            updateSession(session, TenantOperation.LOGIN, response);
+            return session.getCookie() != previous && session.isActive(System.currentTimeMillis());
+        }
+    }
+
+    private void updateSession(TenantSession session, TenantOperation operation, HttpResponse<String> response) {
+        TenantApiClient.setCookie(response).ifPresent(session::updateFromSetCookie);
+        if (operation == TenantOperation.LOGIN && response.statusCode() < 400) {
+            try {
+                ApiResponse apiResponse = ApiResponse.parse(response.body(), LOGIN_DATA_FIELDS);
+                if (apiResponse.getResult()) {
+                    session.setLoginData(apiResponse.getData());
+                }
+            } catch (JsonException ex) {
+                Logger.getLogger(LoadGenerator.class.getName()).log(Level.FINE, null, ex);
+            }
+        } else if (operation == TenantOperation.LOGOUT) {
+            session.clear();
+            SessionRefresher refresher = sessionRefresher;
+            if (Objects.nonNull(refresher)) {
+                refresher.untrack(session);
+            }
+        }
+    }
+
+    /**
+     * 由房客池輪流挑選房客執行一次操作
+     *
+     * @param operation 操作
+     * @param intendedStart 排定的送出時間 (System.nanoTime), 小於 0 時以登入完成後的時間為準
+     */
+    private void execute(TenantOperation operation, long intendedStart) {
+        TenantSession session = sessions.next();
+        if (operation != TenantOperation.LOGIN) {
+            ensureSession(session);
+        }
+        ResponseCache cache = responseCache;
+        ResponseCache.Lookup lookup = null;
+        if (Objects.nonNull(cache) && cache.isCacheable(operation)) {
+            lookup = cache.lookup(session.getUsername(), operation, operation.bodyMap(session.getProfile()));
+            if (lookup.isHit()) {
+                cacheHits.increment();
+                return;
+            }
+        }
+        HttpResponse<String> response = send(operation, session.getProfile(), session.getSessionId(), intendedStart < 0 ? System.nanoTime() : intendedStart);
+        if (Objects.nonNull(cache)) {
+            if (Objects.nonNull(lookup) && Objects.nonNull(response)) {
+                cache.store(lookup, response);
+            } else {
+                cache.invalidate(session.getUsername(), operation);
+            }
+        }
+        if (Objects.nonNull(response)) {
+            updateSession(session, operation, response);
+        }
+    }
+}
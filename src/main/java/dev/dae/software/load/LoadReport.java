@@ -0,0 +1,186 @@
+package dev.dae.software.load;
+
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.metrics.OperationLatencies;
+import jakarta.json.Json;
+import jakarta.json.JsonObjectBuilder;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 壓力測試結果
+ *
+ * @author Ben
+ */
+public class LoadReport {
+
+    private final String mode;
+    private final int users;
+    private final double targetRate;
+    private final long elapsedNanos;
+    private final long requests;
+    private final long transportErrors;
+    private final long httpErrors;
+    private final long apiErrors;
+    private final long cacheHits;
+    private final long coalesced;
+    private final Map<TenantOperation, Long> operationCounts;
+    private final OperationLatencies responseTimes;
+    private final OperationLatencies serviceTimes;
+
+    LoadReport(String mode, int users, double targetRate, long elapsedNanos, long requests, long transportErrors, long httpErrors, long apiErrors, long cacheHits, long coalesced, EnumMap<TenantOperation, Long> operationCounts,
+            OperationLatencies responseTimes, OperationLatencies serviceTimes) {
+        this.mode = mode;
+        this.users = users;
+        this.targetRate = targetRate;
+        this.elapsedNanos = elapsedNanos;
+        this.requests = requests;
+        this.transportErrors = transportErrors;
+        this.httpErrors = httpErrors;
+        this.apiErrors = apiErrors;
+        this.cacheHits = cacheHits;
+        this.coalesced = coalesced;
+        this.operationCounts = Collections.unmodifiableMap(operationCounts);
+        this.responseTimes = responseTimes;
+        this.serviceTimes = serviceTimes;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * @return 目標請求速率 (次/秒), 固定併發模式為 0
+     */
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return 連線失敗或逾時的次數
+     */
+    public long getTransportErrors() {
+        return transportErrors;
+    }
+
+    /**
+     * @return HTTP 狀態碼 4xx/5xx 的次數
+     */
+    public long getHttpErrors() {
+        return httpErrors;
+    }
+
+    /**
+     * @return 回應 result 為 false 的次數
+     */
+    public long getApiErrors() {
+        return apiErrors;
+    }
+
+    /**
+     * @return 由 ResponseCache 回應, 未送出到後端的讀取次數
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return 併入進行中的相同請求, 未送出到後端的查詢次數
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getErrors() {
+        return transportErrors + httpErrors + apiErrors;
+    }
+
+    public Map<TenantOperation, Long> getOperationCounts() {
+        return operationCounts;
+    }
+
+    /**
+     * @return 由排定送出時間起算的回應時間 (已修正 coordinated omission)
+     */
+    public OperationLatencies getResponseTimes() {
+        return responseTimes;
+    }
+
+    /**
+     * @return 由實際送出時間起算的服務時間
+     */
+    public OperationLatencies getServiceTimes() {
+        return serviceTimes;
+    }
+
+    /**
+     * @return 實際達成的請求速率 (次/秒)
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return 錯誤比例
+     */
+    public double getErrorRate() {
+        return requests == 0 ? 0 : (double) getErrors() / requests;
+    }
+
+    /**
+     * @return 一行 JSON, 時間以毫秒為單位
+     */
+    public String toJson() {
+        JsonObjectBuilder counts = Json.createObjectBuilder();
+        operationCounts.forEach((operation, count) -> counts.add(operation.getKey(), count));
+        return Json.createObjectBuilder()
+                .add("mode", mode)
+                .add("users", users)
+                .add("target-rate", targetRate)
+                .add("elapsed", elapsedNanos / 1e6)
+                .add("requests", requests)
+                .add("throughput", getThroughput())
+                .add("errors", Json.createObjectBuilder()
+                        .add("transport", transportErrors)
+                        .add("http", httpErrors)
+                        .add("api", apiErrors)
+                        .add("rate", getErrorRate()))
+                .add("cache-hits", cacheHits)
+                .add("coalesced", coalesced)
+                .add("operations", counts)
+                .add("response-time", responseTimes.toJson())
+                .add("service-time", serviceTimes.toJson())
+                .build().toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("mode = %s, users = %d, target = %.1f req/s, elapsed = %.3f s%n", mode, users, targetRate, elapsedNanos / 1e9));
+        builder.append(String.format("requests = %d, throughput = %.1f req/s%n", requests, getThroughput()));
+        builder.append(String.format("errors = %d (transport = %d, http = %d, api = %d), error rate = %.2f%%%n", getErrors(), transportErrors, httpErrors, apiErrors, getErrorRate() * 100));
+        if (cacheHits > 0) {
+            builder.append(String.format("cache hits = %d, saved = %.1f%% of requests%n", cacheHits, cacheHits * 100.0 / (requests + cacheHits)));
+        }
+        if (coalesced > 0) {
+            builder.append(String.format("coalesced = %d, saved = %.1f%% of requests%n", coalesced, coalesced * 100.0 / (requests + coalesced)));
+        }
+        operationCounts.forEach((operation, count) -> builder.append(String.format("  %-28s %d%n", operation.getKey(), count)));
+        builder.append(String.format("response time%n")).append(responseTimes);
+        builder.append(String.format("service time%n")).append(serviceTimes);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package dev.dae.software.load;
+
+import dev.dae.software.api.TenantOperation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * 具名的壓力測試情境, 即預設的操作組合
+ *
+ * @author Ben
+ */
+public enum Scenario {
+    /**
+     * App 首頁: 以用電資料為主, 偶爾重新整理綁定清單
+     */
+    DASHBOARD("data/room-consumption*4,data/channels-consumption*2,data/consumption*2,device-binding/list"),
+    /**
+     * 報表頁: 退費與儲值報表
+     */
+    REPORTS("refund-report,credit-report"),
+    /**
+     * 綁定頁: 查詢為主, 少量綁定/解除綁定
+     */
+    BINDING("device-binding/list*4,device-binding/query*4,device-binding/bind,device-binding/unbind"),
+    /**
+     * 退費流程: 查詢, 申請, 取消與報表
+     */
+    REFUND("refund-issue/list*4,refund-report*2,refund-issue/new,refund-issue/cancel"),
+    /**
+     * 所有查詢操作各一
+     */
+    READS(String.join(",", Arrays.stream(TenantOperation.values()).filter(TenantOperation::isReadOnly).map(TenantOperation::getKey).toList())),
+    /**
+     * 只登入, 模擬推播後大量房客同時開啟 App
+     */
+    LOGIN_STORM("login");
+
+    private final String mix;
+
+    private Scenario(String mix) {
+        this.mix = mix;
+    }
+
+    /**
+     * @return 操作組合, 格式同 {@link #parseMix(String)}
+     */
+    public String getMix() {
+        return mix;
+    }
+
+    public List<TenantOperation> getOperationMix() {
+        return parseMix(mix);
+    }
+
+    /**
+     * @param name 情境名稱, 不分大小寫, 可用 - 取代 _
+     * @return 對應的 Scenario
+     */
+    public static Optional<Scenario> of(String name) {
+        String normalized = name.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        return Arrays.stream(values()).filter(scenario -> scenario.name().equals(normalized)).findFirst();
+    }
+
+    /**
+     * @param spec 以逗號分隔的 d/m 操作名稱, 可加上 *權重, 例如 data/consumption*4,device-binding/list
+     * @return 依權重重複的操作清單
+     */
+    public static List<TenantOperation> parseMix(String spec) {
+        List<TenantOperation> operations = new ArrayList<>();
+        for (String token : spec.split(",")) {
+            if (token.isBlank()) {
+                continue;
+            }
+            String[] parts = token.trim().split("\\*", 2);
+            TenantOperation operation = TenantOperation.ofKey(parts[0].trim())
+                    .orElseThrow(() -> new IllegalArgumentException(String.format("unknown operation: %s", parts[0])));
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight <= 0) {
+                throw new IllegalArgumentException(String.format("weight must be positive: %s", token));
+            }
+            operations.addAll(Collections.nCopies(weight, operation));
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("operation mix must not be empty");
+        }
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,133 @@
+package dev.dae.software.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 執行緒安全且記錄時不配置物件的延遲直方圖, 以 log-linear 分桶, 相對誤差小於 1/64
+ * <p>
+ * 值以奈秒為單位, 可記錄 0 至約 137 秒, 超出範圍的值計入最後一個分桶並保留在 max 中
+ *
+ * @author Ben
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int HIGHEST_BIT = 36;
+    private static final int BUCKET_COUNT = HIGHEST_BIT - SUB_BUCKET_BITS + 2;
+    private static final int INDEX_COUNT = (BUCKET_COUNT + 1) * SUB_BUCKET_HALF_COUNT;
+    private final AtomicLongArray counts = new AtomicLongArray(INDEX_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, value);
+        }
+        int bucket = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int index = (bucket + 1) * SUB_BUCKET_HALF_COUNT + (int) (value >>> bucket) - SUB_BUCKET_HALF_COUNT;
+        return Math.min(index, INDEX_COUNT - 1);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKET_HALF_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    /**
+     * @param nanos 延遲 (奈秒)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+
+    /**
+     * @param percentile 百分位數, 0 至 100
+     * @return 該百分位數的延遲 (奈秒), 無資料時為 0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        long[] snapshot = new long[INDEX_COUNT];
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long accumulated = 0;
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            accumulated += snapshot[i];
+            if (accumulated >= target) {
+                return Math.min(highestEquivalentValue(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * 將另一個直方圖的計數加入本直方圖
+     *
+     * @param other 另一個直方圖
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalNanos.addAndGet(other.totalNanos.get());
+        long otherMax = other.maxNanos.get();
+        long max = maxNanos.get();
+        while (otherMax > max && !maxNanos.compareAndSet(max, otherMax)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * @return p50/p90/p99/p99.9/max (毫秒) 的摘要
+     */
+    public String summary() {
+        return String.format("n = %d, p50 = %.2f ms, p90 = %.2f ms, p99 = %.2f ms, p99.9 = %.2f ms, max = %.2f ms",
+                getCount(), getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6, getValueAtPercentile(99) / 1e6, getValueAtPercentile(99.9) / 1e6, getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,97 @@
+package dev.dae.software.metrics;
+
+import dev.dae.software.api.TenantOperation;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 依操作 (d/m) 分別記錄的延遲直方圖
+ *
+ * @author Ben
+ */
+public class OperationLatencies {
+
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param bodyMap 請求參數
+     * @return d/m 形式的操作名稱, 無 m 時為 d
+     */
+    public static String keyOf(Map<String, String> bodyMap) {
+        String m = bodyMap.get("m");
+        return Objects.isNull(m) ? bodyMap.get("d") : String.format("%s/%s", bodyMap.get("d"), m);
+    }
+
+    /**
+     * @param key d/m 形式的操作名稱
+     * @return 該操作的直方圖, 不存在時建立
+     */
+    public LatencyHistogram histogram(String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        return Objects.nonNull(histogram) ? histogram : histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    public LatencyHistogram histogram(TenantOperation operation) {
+        return histogram(operation.getKey());
+    }
+
+    public void record(TenantOperation operation, long nanos) {
+        histogram(operation.getKey()).record(nanos);
+    }
+
+    public void record(String key, long nanos) {
+        histogram(key).record(nanos);
+    }
+
+    /**
+     * @return 所有操作合併後的直方圖
+     */
+    public LatencyHistogram total() {
+        LatencyHistogram total = new LatencyHistogram();
+        histograms.values().forEach(total::add);
+        return total;
+    }
+
+    /**
+     * @return 依操作名稱排序的直方圖
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * @return 各操作的次數與百分位數 (毫秒), 例如 {"data/consumption":{"count":10,"mean":1.2,"p50":1.1,...}}
+     */
+    public JsonObject toJson() {
+        JsonObjectBuilder builder = Json.createObjectBuilder();
+        getHistograms().forEach((key, histogram) -> builder.add(key, Json.createObjectBuilder()
+                .add("count", histogram.getCount())
+                .add("mean", histogram.getMeanNanos() / 1e6)
+                .add("p50", histogram.getValueAtPercentile(50) / 1e6)
+                .add("p90", histogram.getValueAtPercentile(90) / 1e6)
+                .add("p99", histogram.getValueAtPercentile(99) / 1e6)
+                .add("p99.9", histogram.getValueAtPercentile(99.9) / 1e6)
+                .add("max", histogram.getMaxNanos() / 1e6)));
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-28s %8s %9s %9s %9s %9s %9s%n", "operation (ms)", "count", "p50", "p90", "p99", "p99.9", "max"));
+        getHistograms().forEach((key, histogram) -> builder.append(String.format("%-28s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", key, histogram.getCount(),
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxNanos() / 1e6)));
+        return builder.toString();
+    }
+}
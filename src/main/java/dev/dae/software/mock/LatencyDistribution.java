@@ -0,0 +1,133 @@
+package dev.dae.software.mock;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 模擬伺服器的回應延遲分佈
+ *
+ * @author Ben
+ */
+public interface LatencyDistribution {
+
+    /**
+     * 無延遲
+     */
+    LatencyDistribution NONE = new Fixed(0);
+
+    /**
+     * @param random 亂數產生器
+     * @return 延遲 (奈秒)
+     */
+    long sampleNanos(Random random);
+
+    /**
+     * @param latency 延遲
+     * @return 固定延遲
+     */
+    static LatencyDistribution fixed(Duration latency) {
+        return new Fixed(latency.toNanos());
+    }
+
+    /**
+     * @param min 最小延遲
+     * @param max 最大延遲
+     * @return 均勻分佈
+     */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        return new Uniform(min.toNanos(), max.toNanos());
+    }
+
+    /**
+     * 對數常態分佈, 大部分請求接近中位數, 少數請求有很長的尾端
+     *
+     * @param median 中位數
+     * @param p99 第 99 百分位數
+     * @return 對數常態分佈
+     */
+    static LatencyDistribution logNormal(Duration median, Duration p99) {
+        double mu = Math.log(median.toNanos());
+        return new LogNormal(mu, (Math.log(p99.toNanos()) - mu) / 2.3263);
+    }
+
+    /**
+     * 解析延遲設定, 單位為毫秒: "none", "fixed:20", "uniform:10:50", "lognormal:20:200" (中位數:p99)
+     *
+     * @param spec 設定字串
+     * @return LatencyDistribution 物件
+     */
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        return switch (parts[0]) {
+            case "none", "" ->
+                NONE;
+            case "fixed" ->
+                fixed(millis(parts, 1));
+            case "uniform" ->
+                uniform(millis(parts, 1), millis(parts, 2));
+            case "lognormal" ->
+                logNormal(millis(parts, 1), millis(parts, 2));
+            default ->
+                throw new IllegalArgumentException(String.format("unknown latency distribution: %s", spec));
+        };
+    }
+
+    private static Duration millis(String[] parts, int index) {
+        if (index >= parts.length) {
+            throw new IllegalArgumentException(String.format("missing value in latency distribution: %s", String.join(":", parts)));
+        }
+        return Duration.ofNanos((long) (Double.parseDouble(parts[index]) * 1_000_000));
+    }
+
+    record Fixed(long nanos) implements LatencyDistribution {
+
+        @Override
+        public long sampleNanos(Random random) {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return nanos == 0 ? "none" : String.format(Locale.ROOT, "fixed %.1f ms", nanos / 1e6);
+        }
+    }
+
+    record Uniform(long minNanos, long maxNanos) implements LatencyDistribution {
+
+        public Uniform {
+            if (minNanos < 0 || maxNanos < minNanos) {
+                throw new IllegalArgumentException("invalid uniform latency range");
+            }
+        }
+
+        @Override
+        public long sampleNanos(Random random) {
+            return minNanos == maxNanos ? minNanos : minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "uniform %.1f-%.1f ms", minNanos / 1e6, maxNanos / 1e6);
+        }
+    }
+
+    record LogNormal(double mu, double sigma) implements LatencyDistribution {
+
+        public LogNormal {
+            if (sigma < 0) {
+                throw new IllegalArgumentException("p99 must not be less than the median");
+            }
+        }
+
+        @Override
+        public long sampleNanos(Random random) {
+            return (long) Math.exp(mu + sigma * random.nextGaussian());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "lognormal median %.1f ms, p99 %.1f ms", Math.exp(mu) / 1e6, Math.exp(mu + sigma * 2.3263) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dev.dae.software.mock;
+
+import dev.dae.software.api.TenantOperation;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 模擬伺服器的行為: 延遲分佈, 錯誤率與回應內容的規模
+ *
+ * @param latency 預設延遲分佈
+ * @param operationLatency 個別操作的延遲分佈
+ * @param errorRate 回應 HTTP 500 的比例
+ * @param failureRate 回應 result 為 false 的比例
+ * @param sessionMaxAge PHPSESSID 的 Max-Age (秒), 每次已登入的請求都會延長
+ * @param reportRows refund-report, credit-report 的資料筆數
+ * @param channels 每個房客的頻道數
+ * @param mqttPort 登入回應中 mqtt 物件的連接埠
+ * @author Ben
+ */
+public record MockBehavior(LatencyDistribution latency, Map<TenantOperation, LatencyDistribution> operationLatency, double errorRate, double failureRate,
+        int sessionMaxAge, int reportRows, int channels, int mqttPort) {
+
+    /**
+     * 無延遲, 無錯誤, Max-Age 1440 秒 (PHP session.gc_maxlifetime 預設值)
+     */
+    public static final MockBehavior DEFAULT = new MockBehavior(LatencyDistribution.NONE, Map.of(), 0, 0, 1440, 200, 1, 1883);
+
+    public MockBehavior {
+        Objects.requireNonNull(latency);
+        operationLatency = Map.copyOf(operationLatency);
+        if (errorRate < 0 || errorRate > 1 || failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("rates must be between 0 and 1");
+        }
+        if (channels < 1) {
+            throw new IllegalArgumentException("at least one channel is required");
+        }
+    }
+
+    /**
+     * @param operation 操作
+     * @return 該操作的延遲分佈
+     */
+    public LatencyDistribution latency(TenantOperation operation) {
+        return operationLatency.getOrDefault(operation, latency);
+    }
+
+    public MockBehavior withLatency(LatencyDistribution latency) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withLatency(TenantOperation operation, LatencyDistribution latency) {
+        Map<TenantOperation, LatencyDistribution> map = new EnumMap<>(TenantOperation.class);
+        map.putAll(operationLatency);
+        map.put(operation, latency);
+        return new MockBehavior(this.latency, map, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withErrorRate(double errorRate) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withFailureRate(double failureRate) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withSessionMaxAge(int sessionMaxAge) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withReportRows(int reportRows) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withChannels(int channels) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+
+    public MockBehavior withMqttPort(int mqttPort) {
+        return new MockBehavior(latency, operationLatency, errorRate, failureRate, sessionMaxAge, reportRows, channels, mqttPort);
+    }
+}
@@ -0,0 +1,522 @@
+package dev.dae.software.mock;
+
+import dev.dae.software.mqtt.DevicePublisher;
+import dev.dae.software.mqtt.MqttSettings;
+import dev.dae.software.util.CryptoAES;
+import dev.dae.software.util.ThreadPools;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 同一程序內的最小 MQTT 3.1.1 broker, 僅支援 Paho MqttClient 在此用到的部分: CONNECT, SUBSCRIBE/UNSUBSCRIBE, QoS 0/1 的 PUBLISH, PINGREQ 與斷線重連
+ * <p>
+ * 不保存 session 與 retained 訊息, 也不重送未確認的 QoS 1 訊息; 相同 client id 重新連線時關閉舊連線. 每條連線有自己的有界送出佇列, 佇列滿時訊息計為 dropped, 不影響其他訂閱者
+ *
+ * @author Ben
+ */
+public class MockMqttBroker implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(MockMqttBroker.class.getName());
+    private static final int CONNECT = 1, CONNACK = 2, PUBLISH = 3, PUBACK = 4, PUBREC = 5, PUBREL = 6, PUBCOMP = 7,
+            SUBSCRIBE = 8, SUBACK = 9, UNSUBSCRIBE = 10, UNSUBACK = 11, PINGREQ = 12, PINGRESP = 13, DISCONNECT = 14;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final int queueCapacity;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Connection> clients = new ConcurrentHashMap<>();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder injected = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param address 監聽位址, 連接埠為 0 時由系統指定
+     * @param queueCapacity 每條連線的送出佇列容量
+     * @throws IOException 無法監聽
+     */
+    public MockMqttBroker(InetSocketAddress address, int queueCapacity) throws IOException {
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address, 128);
+        this.queueCapacity = queueCapacity;
+        this.executor = ThreadPools.newPerTaskExecutor("mock-mqtt");
+    }
+
+    /**
+     * @param port 連接埠, 0 時由系統指定
+     * @return 已啟動, 監聽 127.0.0.1 的 MockMqttBroker 物件
+     * @throws IOException 無法監聽
+     */
+    public static MockMqttBroker start(int port) throws IOException {
+        MockMqttBroker broker = new MockMqttBroker(new InetSocketAddress("127.0.0.1", port), 65536);
+        broker.start();
+        return broker;
+    }
+
+    public void start() {
+        executor.execute(this::acceptLoop);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Paho 使用的 serverURI, 例如 tcp://127.0.0.1:1883
+     */
+    public String getServerUri() {
+        return String.format("tcp://%s:%d", serverSocket.getInetAddress().getHostAddress(), getPort());
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 統計摘要
+     */
+    public String summary() {
+        return String.format("mqtt broker %s: connections = %d (connects = %d), received = %d, injected = %d, delivered = %d, acknowledged = %d, dropped = %d",
+                getServerUri(), getConnectionCount(), connects.sum(), received.sum(), injected.sum(), getDelivered(), acknowledged.sum(), getDropped());
+    }
+
+    /**
+     * 發佈訊息給所有符合的訂閱, 每條連線最多送一次, QoS 取發佈與訂閱的較小值 (最高 1)
+     *
+     * @param topic topic
+     * @param payload 內容
+     * @param qos QoS
+     * @return 送出的連線數
+     */
+    public int publish(String topic, byte[] payload, int qos) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (Connection connection : connections) {
+            int granted = connection.grantedQos(topic);
+            if (granted >= 0 && connection.deliver(topicBytes, payload, Math.min(Math.min(qos, granted), 1))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 依固定速率對 &lt;topic&gt;/&lt;mac-address&gt; 發佈以 CryptoAES 加密的電表讀值, 內容與 DevicePublisher 相同, 可搭配 DevicePublisher.endToEndRecorder 量測延遲
+     *
+     * @param topic 登入回應 mqtt 物件的 topic
+     * @param macAddresses 電表的 mac-address, 每台依 MqttSettings 推導 topic 前綴與金鑰
+     * @param cipherInstance 加密方法
+     * @param qos QoS
+     * @param messagesPerSecond 全部電表合計的每秒發佈數
+     * @param duration 執行時間, 落後排程時到期即停止
+     * @return 實際每秒發佈數
+     */
+    public double inject(String topic, List<String> macAddresses, String cipherInstance, int qos, double messagesPerSecond, Duration duration) {
+        return inject(topic, macAddresses, cipherInstance, qos, messagesPerSecond, Long.MAX_VALUE, duration.toNanos());
+    }
+
+    /**
+     * 依固定速率發佈指定數量的電表讀值
+     *
+     * @param topic 登入回應 mqtt 物件的 topic
+     * @param macAddresses 電表的 mac-address
+     * @param cipherInstance 加密方法
+     * @param qos QoS
+     * @param messagesPerSecond 全部電表合計的每秒發佈數, Double.POSITIVE_INFINITY 表示不限速
+     * @param messages 發佈數量
+     * @return 實際每秒發佈數
+     */
+    public double inject(String topic, List<String> macAddresses, String cipherInstance, int qos, double messagesPerSecond, long messages) {
+        return inject(topic, macAddresses, cipherInstance, qos, messagesPerSecond, messages, 0);
+    }
+
+    private double inject(String topic, List<String> macAddresses, String cipherInstance, int qos, double messagesPerSecond, long messages, long durationNanos) {
+        if (messagesPerSecond <= 0 || macAddresses.isEmpty()) {
+            throw new IllegalArgumentException("messagesPerSecond must be positive and macAddresses must not be empty");
+        }
+        List<String> topics = new ArrayList<>(macAddresses.size());
+        List<CryptoAES> ciphers = new ArrayList<>(macAddresses.size());
+        for (String macAddress : macAddresses) {
+            topics.add(MqttSettings.topicPrefix(topic, macAddress));
+            ciphers.add(CryptoAES.getInstance(cipherInstance, MqttSettings.keySeed(topic, macAddress)));
+        }
+        long intervalNanos = (long) (1e9 / messagesPerSecond);
+        long start = System.nanoTime();
+        double kwh = ThreadLocalRandom.current().nextDouble(1000);
+        long count = 0;
+        for (long i = 0; i < messages && !Thread.currentThread().isInterrupted(); i++) {
+            long intendedStart = start + i * intervalNanos;
+            long now = System.nanoTime();
+            if (durationNanos > 0 && (intendedStart - start >= durationNanos || now - start >= durationNanos)) {
+                break;
+            }
+            if (intendedStart - now > 0) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+            int index = (int) (i % macAddresses.size());
+            kwh += 0.001;
+            try {
+                byte[] payload = ciphers.get(index).encrypt(DevicePublisher.reading(macAddresses.get(index), i / macAddresses.size(), kwh).getBytes(StandardCharsets.UTF_8));
+                publish(topics.get(index), payload, qos);
+                injected.increment();
+                count++;
+            } catch (GeneralSecurityException ex) {
+                LOGGER.log(Level.SEVERE, null, ex);
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed <= 0 ? 0 : count * 1e9 / elapsed;
+    }
+
+    /**
+     * 關閉所有連線 (不送 DISCONNECT), 模擬網路中斷以測試自動重連
+     */
+    public void disconnectAll() {
+        connections.forEach(Connection::close);
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+        }
+        disconnectAll();
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                executor.execute(connection::readLoop);
+                executor.execute(connection::writeLoop);
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.log(Level.WARNING, null, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param filter 訂閱的 topic filter, 可含 + 與 #
+     * @param topic 發佈的 topic
+     * @return 是否符合
+     */
+    static boolean matches(String filter, String topic) {
+        String[] filterLevels = filter.split("/", -1);
+        String[] topicLevels = topic.split("/", -1);
+        for (int i = 0; i < filterLevels.length; i++) {
+            if ("#".equals(filterLevels[i])) {
+                return true;
+            }
+            if (i >= topicLevels.length || !("+".equals(filterLevels[i]) || filterLevels[i].equals(topicLevels[i]))) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+
+    private class Connection {
+
+        private final Socket socket;
+        private final BlockingQueue<byte[]> outbound = new ArrayBlockingQueue<>(queueCapacity);
+        private final Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+        private final AtomicInteger packetId = new AtomicInteger();
+        private volatile String clientId;
+        private volatile boolean closed;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        int grantedQos(String topic) {
+            int granted = -1;
+            for (Map.Entry<String, Integer> entry : subscriptions.entrySet()) {
+                if (entry.getValue() > granted && matches(entry.getKey(), topic)) {
+                    granted = entry.getValue();
+                }
+            }
+            return granted;
+        }
+
+        boolean deliver(byte[] topic, byte[] payload, int qos) {
+            int length = 2 + topic.length + (qos > 0 ? 2 : 0) + payload.length;
+            byte[] packet = new byte[1 + remainingLengthSize(length) + length];
+            int position = header(packet, PUBLISH << 4 | qos << 1, length);
+            position = putShort(packet, position, topic.length);
+            System.arraycopy(topic, 0, packet, position, topic.length);
+            position += topic.length;
+            if (qos > 0) {
+                position = putShort(packet, position, packetId.updateAndGet(id -> id >= 0xFFFF ? 1 : id + 1));
+            }
+            System.arraycopy(payload, 0, packet, position, payload.length);
+            if (!closed && outbound.offer(packet)) {
+                delivered.increment();
+                return true;
+            }
+            dropped.increment();
+            return false;
+        }
+
+        void send(int type, int flags, byte... body) {
+            byte[] packet = new byte[1 + remainingLengthSize(body.length) + body.length];
+            int position = header(packet, type << 4 | flags, body.length);
+            System.arraycopy(body, 0, packet, position, body.length);
+            try {
+                outbound.put(packet);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                close();
+            }
+        }
+
+        void readLoop() {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                int first = input.read();
+                if (first >> 4 != CONNECT || !connect(input, readRemainingLength(input))) {
+                    return;
+                }
+                while (!closed) {
+                    first = input.read();
+                    if (first < 0) {
+                        return;
+                    }
+                    byte[] body = new byte[readRemainingLength(input)];
+                    input.readFully(body);
+                    switch (first >> 4) {
+                        case PUBLISH ->
+                            onPublish(first, body);
+                        case PUBACK, PUBCOMP ->
+                            acknowledged.increment();
+                        case PUBREL ->
+                            send(PUBCOMP, 0, body[0], body[1]);
+                        case SUBSCRIBE ->
+                            onSubscribe(body);
+                        case UNSUBSCRIBE ->
+                            onUnsubscribe(body);
+                        case PINGREQ ->
+                            send(PINGRESP, 0);
+                        case DISCONNECT -> {
+                            return;
+                        }
+                        default -> {
+                            LOGGER.log(Level.FINE, "unexpected packet type {0} from {1}", new Object[]{first >> 4, clientId});
+                            return;
+                        }
+                    }
+                }
+            } catch (SocketTimeoutException ex) {
+                LOGGER.log(Level.FINE, "keep alive expired for {0}", clientId);
+            } catch (EOFException | SocketException ex) {
+                // 連線中斷
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.FINE, null, ex);
+            } finally {
+                close();
+            }
+        }
+
+        private boolean connect(DataInputStream input, int length) throws IOException {
+            byte[] body = new byte[length];
+            input.readFully(body);
+            int[] position = {0};
+            String protocol = readString(body, position);
+            int level = body[position[0]++] & 0xFF;
+            int flags = body[position[0]++] & 0xFF;
+            int keepAlive = readShort(body, position);
+            String id = readString(body, position);
+            if (!("MQTT".equals(protocol) && level == 4) && !("MQIsdp".equals(protocol) && level == 3)) {
+                // 寫出執行緒尚未送出任何封包, 直接回應 unacceptable protocol version 後關閉
+                socket.getOutputStream().write(new byte[]{CONNACK << 4, 2, 0, 1});
+                return false;
+            }
+            clientId = id.isEmpty() ? String.format("anonymous-%d", System.identityHashCode(this)) : id;
+            if (keepAlive > 0) {
+                socket.setSoTimeout(keepAlive * 1500);
+            }
+            Connection previous = clients.put(clientId, this);
+            if (Objects.nonNull(previous) && previous != this) {
+                previous.close();
+            }
+            connects.increment();
+            LOGGER.log(Level.FINE, "{0} connected, clean session = {1}", new Object[]{clientId, (flags & 0x02) != 0});
+            send(CONNACK, 0, (byte) 0, (byte) 0);
+            return true;
+        }
+
+        private void onPublish(int first, byte[] body) {
+            int qos = (first >> 1) & 0x03;
+            int[] position = {0};
+            String topic = readString(body, position);
+            int id = qos > 0 ? readShort(body, position) : 0;
+            byte[] payload = new byte[body.length - position[0]];
+            System.arraycopy(body, position[0], payload, 0, payload.length);
+            received.increment();
+            publish(topic, payload, qos);
+            if (qos == 1) {
+                send(PUBACK, 0, (byte) (id >> 8), (byte) id);
+            } else if (qos == 2) {
+                send(PUBREC, 0, (byte) (id >> 8), (byte) id);
+            }
+        }
+
+        private void onSubscribe(byte[] body) {
+            int[] position = {0};
+            int id = readShort(body, position);
+            List<Byte> granted = new ArrayList<>();
+            while (position[0] < body.length) {
+                String filter = readString(body, position);
+                int qos = body[position[0]++] & 0x03;
+                subscriptions.put(filter, Math.min(qos, 1));
+                granted.add((byte) Math.min(qos, 1));
+            }
+            byte[] response = new byte[2 + granted.size()];
+            response[0] = (byte) (id >> 8);
+            response[1] = (byte) id;
+            for (int i = 0; i < granted.size(); i++) {
+                response[2 + i] = granted.get(i);
+            }
+            send(SUBACK, 0, response);
+        }
+
+        private void onUnsubscribe(byte[] body) {
+            int[] position = {0};
+            int id = readShort(body, position);
+            while (position[0] < body.length) {
+                subscriptions.remove(readString(body, position));
+            }
+            send(UNSUBACK, 0, (byte) (id >> 8), (byte) id);
+        }
+
+        void writeLoop() {
+            try (OutputStream output = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+                while (!closed) {
+                    byte[] packet = outbound.poll(1, TimeUnit.SECONDS);
+                    if (Objects.isNull(packet)) {
+                        continue;
+                    }
+                    output.write(packet);
+                    // 佇列中已有的封包一起送出, 減少 flush 次數
+                    while (Objects.nonNull(packet = outbound.poll())) {
+                        output.write(packet);
+                    }
+                    output.flush();
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, null, ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            if (Objects.nonNull(clientId)) {
+                clients.remove(clientId, this);
+            }
+            dropped.add(outbound.size());
+            outbound.clear();
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    private static int readRemainingLength(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 28; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed remaining length");
+    }
+
+    private static int remainingLengthSize(int length) {
+        return length < 128 ? 1 : length < 16384 ? 2 : length < 2097152 ? 3 : 4;
+    }
+
+    private static int header(byte[] packet, int first, int length) {
+        int position = 0;
+        packet[position++] = (byte) first;
+        do {
+            int b = length & 0x7F;
+            length >>>= 7;
+            packet[position++] = (byte) (length > 0 ? b | 0x80 : b);
+        } while (length > 0);
+        return position;
+    }
+
+    private static int putShort(byte[] packet, int position, int value) {
+        packet[position] = (byte) (value >> 8);
+        packet[position + 1] = (byte) value;
+        return position + 2;
+    }
+
+    private static int readShort(byte[] body, int[] position) {
+        int value = (body[position[0]] & 0xFF) << 8 | body[position[0] + 1] & 0xFF;
+        position[0] += 2;
+        return value;
+    }
+
+    private static String readString(byte[] body, int[] position) {
+        int length = readShort(body, position);
+        String value = new String(body, position[0], length, StandardCharsets.UTF_8);
+        position[0] += length;
+        return value;
+    }
+}
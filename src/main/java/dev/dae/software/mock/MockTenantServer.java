@@ -0,0 +1,472 @@
+package dev.dae.software.mock;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantOperation;
+import dev.dae.software.util.ThreadPools;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 以 JDK 內建 HTTP 伺服器模擬房客 API (/ws/app.php), 供離線測試與量測客戶端本身的吞吐量上限
+ * <p>
+ * 登入後以 Set-Cookie 發給 PHPSESSID 與 Max-Age, 之後每次已登入的請求都延長期限並重新發給 Set-Cookie; 過期或未登入的請求回應 result 為 false
+ *
+ * @author Ben
+ */
+public class MockTenantServer implements AutoCloseable {
+
+    public static final String PATH = "/ws/app.php";
+    private static final char[] SESSION_ID_CHARS = "0123456789abcdefghijklmnopqrstuv".toCharArray();
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(Map.of());
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, MockSession> sessions = new ConcurrentHashMap<>();
+    private final EnumMap<TenantOperation, LongAdder> requests = new EnumMap<>(TenantOperation.class);
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile MockBehavior behavior;
+
+    static {
+        // 標頭與內容分開寫出, 未設定 TCP_NODELAY 時每個回應都會等待 delayed ACK (約 40 ms)
+        if (Objects.isNull(System.getProperty("sun.net.httpserver.nodelay"))) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * @param address 監聽位址, 連接埠為 0 時由系統指定
+     * @param behavior 伺服器行為
+     * @throws IOException 無法監聽
+     */
+    public MockTenantServer(InetSocketAddress address, MockBehavior behavior) throws IOException {
+        this.behavior = Objects.requireNonNull(behavior);
+        for (TenantOperation operation : TenantOperation.values()) {
+            requests.put(operation, new LongAdder());
+        }
+        this.server = HttpServer.create(address, 1024);
+        this.executor = ThreadPools.newPerTaskExecutor("mock-tenant");
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * @param port 連接埠, 0 時由系統指定
+     * @param behavior 伺服器行為
+     * @return 已啟動, 監聽 127.0.0.1 的 MockTenantServer 物件
+     * @throws IOException 無法監聽
+     */
+    public static MockTenantServer start(int port, MockBehavior behavior) throws IOException {
+        MockTenantServer mockServer = new MockTenantServer(new InetSocketAddress("127.0.0.1", port), behavior);
+        mockServer.start();
+        return mockServer;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return host:port, 可直接用於 TenantApiClient.endpoint("http", host, PATH)
+     */
+    public String getHost() {
+        InetSocketAddress address = server.getAddress();
+        return String.format("%s:%d", address.getHostString(), address.getPort());
+    }
+
+    /**
+     * @return 房客 API 的 URI
+     */
+    public URI getEndpoint() {
+        return TenantApiClient.endpoint("http", getHost(), PATH);
+    }
+
+    public MockBehavior getBehavior() {
+        return behavior;
+    }
+
+    /**
+     * 執行中即可變更行為, 例如逐步提高延遲或錯誤率
+     *
+     * @param behavior 伺服器行為
+     */
+    public void setBehavior(MockBehavior behavior) {
+        this.behavior = Objects.requireNonNull(behavior);
+    }
+
+    /**
+     * @return 收到的請求總數
+     */
+    public long getRequests() {
+        return requests.values().stream().mapToLong(LongAdder::sum).sum() + unknown.sum();
+    }
+
+    /**
+     * @param operation 操作
+     * @return 該操作收到的請求數
+     */
+    public long getRequests(TenantOperation operation) {
+        return requests.get(operation).sum();
+    }
+
+    /**
+     * @return 目前有效的 session 數
+     */
+    public int getSessionCount() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> session.isExpired(now));
+        return sessions.size();
+    }
+
+    /**
+     * @return 統計摘要
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder(String.format("mock %s: requests = %d, HTTP 500 = %d, result false = %d, not logged in = %d, unknown = %d, sessions = %d",
+                getHost(), getRequests(), errors.sum(), failures.sum(), rejected.sum(), unknown.sum(), getSessionCount()));
+        requests.forEach((operation, count) -> {
+            if (count.sum() > 0) {
+                builder.append(String.format("%n  %s = %d", operation, count.sum()));
+            }
+        });
+        return builder.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Map<String, String> form = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Optional<TenantOperation> operation = TenantOperation.of(form.getOrDefault("d", ""), form.get("m"));
+            if (operation.isEmpty()) {
+                unknown.increment();
+                respond(exchange, 200, failure(String.format("unknown service: %s", form.get("d"))));
+                return;
+            }
+            requests.get(operation.get()).increment();
+            MockBehavior current = behavior;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long latency = current.latency(operation.get()).sampleNanos(random);
+            if (latency > 0) {
+                TimeUnit.NANOSECONDS.sleep(latency);
+            }
+            if (random.nextDouble() < current.errorRate()) {
+                errors.increment();
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+                respond(exchange, 500, "<b>Fatal error</b>: mock internal server error".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            respond(exchange, 200, dispatch(exchange, operation.get(), form, current, random));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] dispatch(HttpExchange exchange, TenantOperation operation, Map<String, String> form, MockBehavior current, ThreadLocalRandom random) {
+        if (operation == TenantOperation.LOGIN) {
+            return login(exchange, form, current);
+        }
+        String sessionId = sessionId(exchange.getRequestHeaders());
+        MockSession session = Objects.isNull(sessionId) ? null : sessions.get(sessionId);
+        long now = System.nanoTime();
+        if (Objects.isNull(session) || session.isExpired(now)) {
+            if (Objects.nonNull(session)) {
+                sessions.remove(sessionId, session);
+            }
+            rejected.increment();
+            return failure("not logged in");
+        }
+        if (operation == TenantOperation.LOGOUT) {
+            sessions.remove(sessionId);
+            return success(generator -> generator.writeStartObject("data").writeEnd());
+        }
+        session.touch(now, current.sessionMaxAge());
+        setSessionCookie(exchange, sessionId, current.sessionMaxAge());
+        if (random.nextDouble() < current.failureRate()) {
+            failures.increment();
+            return failure("mock failure");
+        }
+        return success(generator -> writeData(generator, operation, form, session, current, random));
+    }
+
+    private byte[] login(HttpExchange exchange, Map<String, String> form, MockBehavior current) {
+        String username = form.getOrDefault("username", "");
+        if (username.isEmpty() || form.getOrDefault("password", "").isEmpty()) {
+            failures.increment();
+            return failure("invalid username or password");
+        }
+        if (ThreadLocalRandom.current().nextDouble() < current.failureRate()) {
+            failures.increment();
+            return failure("mock failure");
+        }
+        String sessionId = newSessionId();
+        MockSession session = new MockSession(username, form.getOrDefault("user-code", ""));
+        session.touch(System.nanoTime(), current.sessionMaxAge());
+        sessions.put(sessionId, session);
+        setSessionCookie(exchange, sessionId, current.sessionMaxAge());
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        String mqttHost = Objects.isNull(host) ? server.getAddress().getHostString() : host.replaceFirst(":\\d+$", "");
+        return success(generator -> {
+            generator.writeStartObject("data")
+                    .write("tenant-id", session.tenantId())
+                    .write("username", username)
+                    .writeStartObject("mqtt")
+                    .write("host", mqttHost)
+                    .write("port", current.mqttPort())
+                    .write("topic", String.format("dae/tenant/%s", session.userCode()))
+                    .writeEnd()
+                    .writeStartArray("channels");
+            for (int i = 0; i < current.channels(); i++) {
+                generator.writeStartObject()
+                        .write("mac-address", session.macAddress(i))
+                        .write("channel-name", session.channelName(i))
+                        .write("device-code", session.deviceCode(i))
+                        .writeEnd();
+            }
+            generator.writeEnd().writeEnd();
+        });
+    }
+
+    private void writeData(JsonGenerator generator, TenantOperation operation, Map<String, String> form, MockSession session, MockBehavior current, ThreadLocalRandom random) {
+        switch (operation) {
+            case DATA_CONSUMPTION -> {
+                generator.writeStartObject("data").write("channel-name", session.channelName(0)).writeStartArray("consumption");
+                writeConsumption(generator, 30, random);
+                generator.writeEnd().writeEnd();
+            }
+            case DATA_CHANNELS_CONSUMPTION -> {
+                generator.writeStartArray("data");
+                for (int i = 0; i < current.channels(); i++) {
+                    generator.writeStartObject().write("channel-name", session.channelName(i)).writeStartArray("consumption");
+                    writeConsumption(generator, 30, random);
+                    generator.writeEnd().writeEnd();
+                }
+                generator.writeEnd();
+            }
+            case DATA_ROOM_CONSUMPTION ->
+                generator.writeStartObject("data")
+                        .write("room", session.channelName(0))
+                        .write("kwh", round(random.nextDouble(50, 500)))
+                        .write("balance", round(random.nextDouble(0, 2000)))
+                        .writeEnd();
+            case DEVICE_BINDING_LIST -> {
+                generator.writeStartArray("data");
+                for (int i = 0; i < current.channels(); i++) {
+                    generator.writeStartObject()
+                            .write("device-code", session.deviceCode(i))
+                            .write("channel-name", session.channelName(i))
+                            .write("bound-at", "2021-11-01 10:00:00")
+                            .writeEnd();
+                }
+                generator.writeEnd();
+            }
+            case DEVICE_BINDING_BIND, DEVICE_BINDING_UNBIND ->
+                generator.writeStartObject("data")
+                        .write("device-code", form.getOrDefault("device-code", ""))
+                        .write("bound", operation == TenantOperation.DEVICE_BINDING_BIND)
+                        .writeEnd();
+            case DEVICE_BINDING_QUERY ->
+                generator.writeStartObject("data")
+                        .write("channel-name", form.getOrDefault("channel-name", ""))
+                        .write("device-code", session.deviceCode(0))
+                        .write("bound", true)
+                        .writeEnd();
+            case REFUND_REPORT, CREDIT_REPORT ->
+                writeReport(generator, session, current.reportRows(), random);
+            case REFUND_ISSUE_LIST ->
+                writeReport(generator, session, 10, random);
+            case REFUND_ISSUE_NEW ->
+                generator.writeStartObject("data")
+                        .write("refund-code", String.format("R%08d", random.nextInt(100_000_000)))
+                        .write("device-code", form.getOrDefault("device-code", ""))
+                        .write("status", "pending")
+                        .writeEnd();
+            case REFUND_ISSUE_CANCEL ->
+                generator.writeStartObject("data")
+                        .write("device-code", form.getOrDefault("device-code", ""))
+                        .write("status", "cancelled")
+                        .writeEnd();
+            case REFUND_AGREE ->
+                generator.writeStartObject("data")
+                        .write("refund-code", form.getOrDefault("refund-code", ""))
+                        .write("agree", "1".equals(form.get("agree")))
+                        .writeEnd();
+            default ->
+                generator.writeStartObject("data").writeEnd();
+        }
+    }
+
+    private static void writeConsumption(JsonGenerator generator, int days, ThreadLocalRandom random) {
+        for (int day = 1; day <= days; day++) {
+            generator.writeStartObject()
+                    .write("date", String.format("2021-11-%02d", day))
+                    .write("kwh", round(random.nextDouble(0, 20)))
+                    .writeEnd();
+        }
+    }
+
+    private static void writeReport(JsonGenerator generator, MockSession session, int rows, ThreadLocalRandom random) {
+        generator.writeStartArray("data");
+        for (int i = 0; i < rows; i++) {
+            generator.writeStartObject()
+                    .write("id", i)
+                    .write("device-code", session.deviceCode(0))
+                    .write("channel-name", session.channelName(0))
+                    .write("amount", 100 + random.nextInt(900))
+                    .write("balance", round(1000 + i * 0.37))
+                    .write("status", "done")
+                    .write("created-at", String.format("2021-%02d-%02d 10:%02d:00", i % 12 + 1, i % 28 + 1, i % 60))
+                    .writeEnd();
+        }
+        generator.writeEnd();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static byte[] success(Consumer<JsonGenerator> data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(output)) {
+            generator.writeStartObject().write("result", true).write("message", "");
+            data.accept(generator);
+            generator.writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] failure(String message) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(output)) {
+            generator.writeStartObject().write("result", false).write("message", message).writeEnd();
+        }
+        return output.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        if (!headers.containsKey("Content-Type")) {
+            headers.set("Content-Type", "application/json; charset=UTF-8");
+        }
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static void setSessionCookie(HttpExchange exchange, String sessionId, int maxAge) {
+        exchange.getResponseHeaders().set("Set-Cookie", String.format("PHPSESSID=%s; Max-Age=%d; path=/; HttpOnly", sessionId, maxAge));
+    }
+
+    private static String sessionId(Headers headers) {
+        for (String cookie : headers.getOrDefault("Cookie", List.of())) {
+            for (String pair : cookie.split(";\\s*")) {
+                if (pair.startsWith("PHPSESSID=")) {
+                    return pair.substring("PHPSESSID=".length());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String newSessionId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] chars = new char[26];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = SESSION_ID_CHARS[random.nextInt(SESSION_ID_CHARS.length)];
+        }
+        return new String(chars);
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int index = pair.indexOf('=');
+            String name = index < 0 ? pair : pair.substring(0, index);
+            String value = index < 0 ? "" : pair.substring(index + 1);
+            form.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return form;
+    }
+
+    /**
+     * 登入中的房客, 頻道與設備代碼由帳號決定, 重複登入時不變
+     */
+    private static class MockSession {
+
+        private final String username;
+        private final String userCode;
+        private volatile long expiresAtNanos;
+
+        MockSession(String username, String userCode) {
+            this.username = username;
+            this.userCode = userCode.isEmpty() ? String.format("%010d", Math.floorMod(username.hashCode(), 10_000_000_000L)) : userCode;
+        }
+
+        int tenantId() {
+            return Math.floorMod(username.hashCode(), 100_000);
+        }
+
+        String userCode() {
+            return userCode;
+        }
+
+        String channelName(int index) {
+            return String.format("A%03d", (tenantId() + index) % 1000);
+        }
+
+        String deviceCode(int index) {
+            return String.format("13019071%05d", (tenantId() + index) % 100_000);
+        }
+
+        String macAddress(int index) {
+            int value = tenantId() * 16 + index;
+            return String.format(Locale.ROOT, "02:00:00:%02X:%02X:%02X", (value >> 16) & 0xFF, (value >> 8) & 0xFF, value & 0xFF);
+        }
+
+        void touch(long now, int maxAge) {
+            expiresAtNanos = now + TimeUnit.SECONDS.toNanos(maxAge);
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAtNanos > 0;
+        }
+    }
+}
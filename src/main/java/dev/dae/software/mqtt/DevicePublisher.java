@@ -0,0 +1,257 @@
+package dev.dae.software.mqtt;
+
+import dev.dae.software.metrics.LatencyHistogram;
+import dev.dae.software.util.CryptoAES;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonParser;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * 模擬多台電表, 依固定速率對 &lt;topic&gt;/&lt;mac-address&gt; 發佈以 CryptoAES 加密的讀值
+ * <p>
+ * 明文帶有發佈時間 (sent-at, epoch 微秒), 搭配 {@link #endToEndRecorder(LatencyHistogram)} 作為 MeterSubscriber 的回呼即可量測發佈到收訊的延遲
+ *
+ * @author Ben
+ */
+public class DevicePublisher implements AutoCloseable {
+
+    public static final String SENT_AT = "sent-at";
+    private static final Logger LOGGER = Logger.getLogger(DevicePublisher.class.getName());
+    private final MqttAsyncClient mqttClient;
+    private final MqttConnectOptions connectOptions;
+    private final List<Device> devices;
+    private final int qos;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+    private final IMqttActionListener publishListener = new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken token) {
+            acknowledged.increment();
+            publishLatency.record(System.nanoTime() - (long) token.getUserContext());
+        }
+
+        @Override
+        public void onFailure(IMqttToken token, Throwable exception) {
+            failed.increment();
+            LOGGER.log(Level.FINE, null, exception);
+        }
+    };
+
+    /**
+     * @param mqttClient 尚未連線的 MqttAsyncClient 物件
+     * @param connectOptions 連線選項, maxInflight 決定未確認訊息的上限
+     * @param topic 登入回應 mqtt 物件的 topic
+     * @param macAddresses 模擬電表的 mac-address, 每台依 MqttSettings 推導 topic 前綴與金鑰
+     * @param cipherInstance 加密方法
+     * @param qos 發佈的 QoS
+     */
+    public DevicePublisher(MqttAsyncClient mqttClient, MqttConnectOptions connectOptions, String topic, List<String> macAddresses, String cipherInstance, int qos) {
+        if (macAddresses.isEmpty()) {
+            throw new IllegalArgumentException("macAddresses must not be empty");
+        }
+        this.mqttClient = Objects.requireNonNull(mqttClient);
+        this.connectOptions = Objects.requireNonNull(connectOptions);
+        this.qos = qos;
+        List<Device> list = new ArrayList<>(macAddresses.size());
+        for (String macAddress : macAddresses) {
+            list.add(new Device(macAddress, MqttSettings.topicPrefix(topic, macAddress), CryptoAES.getInstance(cipherInstance, MqttSettings.keySeed(topic, macAddress))));
+        }
+        this.devices = List.copyOf(list);
+    }
+
+    /**
+     * @param count 數量
+     * @return 本地管理位址範圍內不重複的 mac-address
+     */
+    public static List<String> simulatedMacAddresses(int count) {
+        List<String> macAddresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            macAddresses.add(String.format("02%010X", i));
+        }
+        return macAddresses;
+    }
+
+    /**
+     * 建立 MeterSubscriber 的回呼, 由明文的 sent-at 計算發佈到收訊的延遲; 發佈端與訂閱端需時鐘同步
+     *
+     * @param histogram 記錄延遲的 histogram
+     * @return MeterSubscriber 的回呼
+     */
+    public static BiConsumer<String, String> endToEndRecorder(LatencyHistogram histogram) {
+        return (topic, message) -> {
+            long sentAt = sentAt(message);
+            if (sentAt > 0) {
+                histogram.record((epochMicros() - sentAt) * 1000);
+            }
+        };
+    }
+
+    private static long sentAt(String message) {
+        try (JsonParser parser = Json.createParser(new StringReader(message))) {
+            while (parser.hasNext()) {
+                if (parser.next() == JsonParser.Event.KEY_NAME && SENT_AT.equals(parser.getString())) {
+                    parser.next();
+                    return parser.getLong();
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+        }
+        return 0;
+    }
+
+    private static long epochMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+
+    /**
+     * 連線, 會阻塞到連線完成
+     *
+     * @throws MqttException 連線失敗
+     */
+    public void connect() throws MqttException {
+        mqttClient.connect(connectOptions).waitForCompletion();
+    }
+
+    /**
+     * 各電表依相同速率輪流發佈, 依排定時間送出, 不等待前一則確認
+     *
+     * @param messagesPerSecondPerDevice 每台電表每秒發佈數
+     * @param duration 執行時間
+     * @return 實際每秒發佈數
+     */
+    public double run(double messagesPerSecondPerDevice, Duration duration) {
+        if (messagesPerSecondPerDevice <= 0) {
+            throw new IllegalArgumentException("messagesPerSecondPerDevice must be positive");
+        }
+        long intervalNanos = (long) (1e9 / (messagesPerSecondPerDevice * devices.size()));
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        for (long i = 0; !Thread.currentThread().isInterrupted(); i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= deadline) {
+                break;
+            }
+            long delay = intendedStart - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            publish(devices.get((int) (i % devices.size())));
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed <= 0 ? 0 : published.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * @param macAddress 電表的 mac-address
+     * @param sequence 序號
+     * @param kwh 讀值
+     * @return 帶有目前時間 (sent-at) 的電表讀值明文
+     */
+    public static String reading(String macAddress, long sequence, double kwh) {
+        return String.format(Locale.ROOT, "{\"mac-address\":\"%s\",\"seq\":%d,\"kwh\":%.3f,\"%s\":%d}", macAddress, sequence, kwh, SENT_AT, epochMicros());
+    }
+
+    private void publish(Device device) {
+        String reading = reading(device.macAddress, device.sequence++, device.nextReading());
+        try {
+            MqttMessage message = new MqttMessage(device.cryptoAES.encrypt(reading.getBytes(StandardCharsets.UTF_8)));
+            message.setQos(qos);
+            mqttClient.publish(device.topic, message, System.nanoTime(), publishListener);
+            published.increment();
+        } catch (GeneralSecurityException ex) {
+            failed.increment();
+            LOGGER.log(Level.SEVERE, null, ex);
+        } catch (MqttException ex) {
+            // 超過 maxInflight 或連線中斷, 不阻塞發佈迴圈
+            failed.increment();
+            LOGGER.log(Level.FINE, null, ex);
+        }
+    }
+
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getAcknowledged() {
+        return acknowledged.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 發佈到完成 (QoS 0 為送出, QoS 1 為收到 PUBACK) 的時間
+     */
+    public LatencyHistogram getPublishLatency() {
+        return publishLatency;
+    }
+
+    /**
+     * @return 發佈統計摘要
+     */
+    public String summary() {
+        return String.format("devices = %d, published = %d, acknowledged = %d, failed = %d%n  publish: %s",
+                devices.size(), getPublished(), getAcknowledged(), getFailed(), publishLatency.summary());
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (mqttClient.isConnected()) {
+                mqttClient.disconnect().waitForCompletion();
+            }
+            mqttClient.close();
+        } catch (MqttException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+        }
+    }
+
+    private static class Device {
+
+        private final String macAddress;
+        private final String topic;
+        private final CryptoAES cryptoAES;
+        private long sequence;
+        private double kwh = ThreadLocalRandom.current().nextDouble(1000);
+
+        private Device(String macAddress, String topic, CryptoAES cryptoAES) {
+            this.macAddress = macAddress;
+            this.topic = topic;
+            this.cryptoAES = cryptoAES;
+        }
+
+        private double nextReading() {
+            kwh += ThreadLocalRandom.current().nextDouble(0.01);
+            return kwh;
+        }
+    }
+}
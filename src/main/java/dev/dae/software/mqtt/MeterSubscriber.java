@@ -0,0 +1,288 @@
+package dev.dae.software.mqtt;
+
+import dev.dae.software.metrics.LatencyHistogram;
+import dev.dae.software.util.CryptoAES;
+import dev.dae.software.util.ThreadPools;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * 訂閱房客所有迴路的電表 topic 並以各迴路的 CryptoAES 解密
+ * <p>
+ * Paho 的回呼執行緒只負責把訊息放進有界佇列, 解密在 worker 執行緒上進行; 佇列滿時訊息計為 dropped. 所有迴路共用同一條連線與 worker, 以一次 SUBSCRIBE 訂閱
+ *
+ * @author Ben
+ */
+public class MeterSubscriber implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(MeterSubscriber.class.getName());
+    private static final ThreadLocal<byte[]> PLAINTEXT_BUFFER = ThreadLocal.withInitial(() -> new byte[1024]);
+    private final MqttClient mqttClient;
+    private final MqttConnectOptions connectOptions;
+    private final TenantChannels channels;
+    private final LongAdder[] channelDecrypted;
+    private final ThreadPoolExecutor workers;
+    private final BiConsumer<String, String> messageHandler;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder decrypted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram decryptLatency = new LatencyHistogram();
+    private volatile long startedAt;
+    private long lastSnapshotAt;
+    private long lastSnapshotCount;
+
+    /**
+     * @param mqttClient 尚未連線的 MqttClient 物件
+     * @param connectOptions 連線選項
+     * @param topicPrefix 迴路的 topic 前綴, 訂閱 topicPrefix/#
+     * @param cryptoAES 該迴路的 CryptoAES 物件
+     * @param workerCount 解密 worker 數量
+     * @param queueCapacity 等待解密的訊息佇列容量
+     * @param messageHandler 解密後的回呼 (topic, 明文), 在 worker 執行緒上執行, 可為 null
+     */
+    public MeterSubscriber(MqttClient mqttClient, MqttConnectOptions connectOptions, String topicPrefix, CryptoAES cryptoAES, int workerCount, int queueCapacity,
+            BiConsumer<String, String> messageHandler) {
+        this(mqttClient, connectOptions, TenantChannels.single(topicPrefix, cryptoAES), workerCount, queueCapacity, messageHandler);
+    }
+
+    /**
+     * @param mqttClient 尚未連線的 MqttClient 物件
+     * @param connectOptions 連線選項
+     * @param channels 房客的所有迴路, 每個迴路訂閱 前綴/#
+     * @param workerCount 解密 worker 數量
+     * @param queueCapacity 等待解密的訊息佇列容量
+     * @param messageHandler 解密後的回呼 (topic, 明文), 在 worker 執行緒上執行, 可為 null
+     */
+    public MeterSubscriber(MqttClient mqttClient, MqttConnectOptions connectOptions, TenantChannels channels, int workerCount, int queueCapacity,
+            BiConsumer<String, String> messageHandler) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("no channel to subscribe");
+        }
+        this.mqttClient = Objects.requireNonNull(mqttClient);
+        this.connectOptions = Objects.requireNonNull(connectOptions);
+        this.channels = channels;
+        this.channelDecrypted = new LongAdder[channels.size()];
+        for (int i = 0; i < channelDecrypted.length; i++) {
+            channelDecrypted[i] = new LongAdder();
+        }
+        this.messageHandler = messageHandler;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                ThreadPools.daemonThreadFactory("mqtt-decrypt"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 連線並訂閱, 會阻塞到連線完成
+     *
+     * @throws MqttException 連線或訂閱失敗
+     */
+    public void start() throws MqttException {
+        mqttClient.setCallback(new SubscriberCallback());
+        startedAt = System.nanoTime();
+        synchronized (this) {
+            lastSnapshotAt = startedAt;
+            lastSnapshotCount = 0;
+        }
+        mqttClient.connect(connectOptions);
+        subscribe();
+    }
+
+    private void subscribe() throws MqttException {
+        String[] topicFilters = channels.topicFilters();
+        int[] qos = new int[topicFilters.length];
+        Arrays.fill(qos, 1);
+        mqttClient.subscribe(topicFilters, qos);
+    }
+
+    private void dispatch(String topic, byte[] payload, long arrivedAt) {
+        try {
+            workers.execute(() -> decrypt(topic, payload, arrivedAt));
+        } catch (RejectedExecutionException ex) {
+            dropped.increment();
+        }
+    }
+
+    private void decrypt(String topic, byte[] payload, long arrivedAt) {
+        long start = System.nanoTime();
+        queueLatency.record(start - arrivedAt);
+        TenantChannels.Channel channel = channels.find(topic);
+        if (Objects.isNull(channel)) {
+            unmatched.increment();
+            return;
+        }
+        byte[] buffer = PLAINTEXT_BUFFER.get();
+        int maxLength = CryptoAES.maxDecryptedLength(payload.length);
+        if (buffer.length < maxLength) {
+            buffer = new byte[Integer.highestOneBit(maxLength) << 1];
+            PLAINTEXT_BUFFER.set(buffer);
+        }
+        try {
+            int length = channel.cryptoAES().decrypt(payload, 0, payload.length, buffer, 0);
+            decryptLatency.record(System.nanoTime() - start);
+            decrypted.increment();
+            channelDecrypted[channel.index()].increment();
+            if (Objects.nonNull(messageHandler)) {
+                messageHandler.accept(topic, new String(buffer, 0, length, StandardCharsets.UTF_8));
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException ex) {
+            failed.increment();
+            LOGGER.log(Level.FINE, String.format("cannot decrypt message on %s", topic), ex);
+        }
+    }
+
+    public boolean isConnected() {
+        return mqttClient.isConnected();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getDecrypted() {
+        return decrypted.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 不屬於任何迴路 topic 的訊息數
+     */
+    public long getUnmatched() {
+        return unmatched.sum();
+    }
+
+    /**
+     * @return 訂閱的迴路
+     */
+    public TenantChannels getChannels() {
+        return channels;
+    }
+
+    /**
+     * @param index 迴路在 {@link TenantChannels} 中的順序
+     * @return 該迴路已解密的訊息數
+     */
+    public long getDecrypted(int index) {
+        return channelDecrypted[index].sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 訊息在佇列中等待 worker 的時間
+     */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * @return 單則訊息的解密時間
+     */
+    public LatencyHistogram getDecryptLatency() {
+        return decryptLatency;
+    }
+
+    /**
+     * @return 自連線起平均每秒收到的訊息數
+     */
+    public double getMessagesPerSecond() {
+        long elapsed = System.nanoTime() - startedAt;
+        return startedAt == 0 || elapsed <= 0 ? 0 : received.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * @return 自上次呼叫起每秒收到的訊息數
+     */
+    public synchronized double sampleMessagesPerSecond() {
+        long now = System.nanoTime();
+        long count = received.sum();
+        double rate = now == lastSnapshotAt ? 0 : (count - lastSnapshotCount) * 1e9 / (now - lastSnapshotAt);
+        lastSnapshotAt = now;
+        lastSnapshotCount = count;
+        return rate;
+    }
+
+    /**
+     * @return 收訊, 解密與延遲摘要
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder(String.format("received = %d (%.1f msg/s), decrypted = %d, failed = %d, unmatched = %d, dropped = %d, queued = %d%n  queue wait: %s%n  decrypt: %s",
+                getReceived(), sampleMessagesPerSecond(), getDecrypted(), getFailed(), getUnmatched(), getDropped(), workers.getQueue().size(), queueLatency.summary(), decryptLatency.summary()));
+        if (channels.size() > 1) {
+            builder.append(String.format("%n  channels:"));
+            for (TenantChannels.Channel channel : channels.getChannels()) {
+                builder.append(String.format(" %s = %d", channel.channelName().isEmpty() ? channel.macAddress() : channel.channelName(), getDecrypted(channel.index())));
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (mqttClient.isConnected()) {
+                mqttClient.disconnect();
+            }
+            mqttClient.close();
+        } catch (MqttException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+        }
+        List<Runnable> pending = workers.shutdownNow();
+        dropped.add(pending.size());
+    }
+
+    private class SubscriberCallback implements MqttCallbackExtended {
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            if (reconnect) {
+                // 同步的 subscribe 不在 Paho 回呼執行緒上等待 SUBACK
+                ThreadPools.daemonThreadFactory("mqtt-resubscribe").newThread(() -> {
+                    try {
+                        subscribe();
+                    } catch (MqttException ex) {
+                        LOGGER.log(Level.WARNING, String.format("cannot resubscribe %d channels after reconnecting to %s", channels.size(), serverURI), ex);
+                    }
+                }).start();
+            }
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            LOGGER.log(Level.WARNING, String.format("connection lost while subscribing %d channels", channels.size()), cause);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            received.increment();
+            dispatch(topic, message.getPayload(), System.nanoTime());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dev.dae.software.mqtt;
+
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import java.util.Objects;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+
+/**
+ * 登入回應 mqtt 物件中的連線設定與 topic/金鑰種子的推導規則
+ *
+ * @author Ben
+ */
+public class MqttSettings {
+
+    public static final int DEFAULT_PORT = 1883;
+    private final String host;
+    private final int port;
+    private final boolean ssl;
+    private final String username;
+    private final String password;
+    private final String topic;
+
+    public MqttSettings(String host, int port, boolean ssl, String username, String password, String topic) {
+        this.host = Objects.requireNonNull(host);
+        this.port = port;
+        this.ssl = ssl;
+        this.username = Objects.requireNonNullElse(username, "");
+        this.password = Objects.requireNonNullElse(password, "");
+        this.topic = Objects.requireNonNull(topic);
+    }
+
+    /**
+     * @param mqttObject 登入回應的 mqtt 物件
+     * @param defaultHost mqtt 物件未提供 host 時使用的主機, 通常為 API 主機
+     * @return MqttSettings 物件
+     */
+    public static MqttSettings fromLogin(JsonObject mqttObject, String defaultHost) {
+        String host = text(mqttObject, "host", defaultHost);
+        int port = number(mqttObject, "port", DEFAULT_PORT);
+        boolean ssl = mqttObject.getBoolean("ssl", false) || port == 8883;
+        return new MqttSettings(host, port, ssl, text(mqttObject, "username", ""), text(mqttObject, "password", ""), mqttObject.getString("topic"));
+    }
+
+    private static String text(JsonObject object, String name, String defaultValue) {
+        JsonValue value = object.get(name);
+        return value instanceof JsonString string ? string.getString() : defaultValue;
+    }
+
+    private static int number(JsonObject object, String name, int defaultValue) {
+        JsonValue value = object.get(name);
+        if (value instanceof JsonNumber number) {
+            return number.intValue();
+        }
+        if (value instanceof JsonString string) {
+            try {
+                return Integer.parseInt(string.getString());
+            } catch (NumberFormatException ex) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @param topic 登入回應 mqtt 物件的 topic
+     * @param macAddress 迴路的 mac-address
+     * @return 該迴路的 topic 前綴
+     */
+    public static String topicPrefix(String topic, String macAddress) {
+        return String.format("%s/%s", topic, macAddress);
+    }
+
+    /**
+     * @param topic 登入回應 mqtt 物件的 topic
+     * @param macAddress 迴路的 mac-address
+     * @return 該迴路 CryptoAES 的金鑰種子
+     */
+    public static String keySeed(String topic, String macAddress) {
+        return String.format("%s+%s", topic, macAddress);
+    }
+
+    public String getServerUri() {
+        return String.format("%s://%s:%d", ssl ? "ssl" : "tcp", host, port);
+    }
+
+    /**
+     * 將帳號密碼設定至連線選項; 沒有帳號時不設定也不清除, 應用於每次連線新建的連線選項
+     *
+     * @param options 連線選項
+     * @return 同一個連線選項
+     */
+    public MqttConnectOptions applyTo(MqttConnectOptions options) {
+        if (!username.isEmpty()) {
+            options.setUserName(username);
+            options.setPassword(password.toCharArray());
+        }
+        return options;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+}
@@ -0,0 +1,160 @@
+package dev.dae.software.mqtt;
+
+import dev.dae.software.util.CryptoAES;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 一位房客登入回應中所有迴路的 topic 前綴, mac-address 與已衍生金鑰的 CryptoAES, 登入後建立一次, 收訊時依 topic 查詢
+ *
+ * @author Ben
+ */
+public final class TenantChannels {
+
+    public static final TenantChannels EMPTY = new TenantChannels("", new Channel[0]);
+    private final String topic;
+    private final Channel[] channels;
+    private final HashMap<String, Channel> byTopicPrefix;
+
+    /**
+     * @param index 在登入回應 channels 陣列中的順序 (略過無 mac-address 的迴路後)
+     * @param macAddress 迴路的 mac-address
+     * @param channelName 迴路名稱
+     * @param deviceCode 電表代碼
+     * @param topicPrefix 迴路的 topic 前綴
+     * @param cryptoAES 該迴路的 CryptoAES 物件
+     */
+    public record Channel(int index, String macAddress, String channelName, String deviceCode, String topicPrefix, CryptoAES cryptoAES) {
+    }
+
+    private TenantChannels(String topic, Channel[] channels) {
+        this.topic = topic;
+        this.channels = channels;
+        this.byTopicPrefix = new HashMap<>(channels.length * 2);
+        for (Channel channel : channels) {
+            byTopicPrefix.put(channel.topicPrefix(), channel);
+        }
+    }
+
+    /**
+     * @param mqttObject 登入回應的 mqtt 物件
+     * @param channelsArray 登入回應的 channels 陣列
+     * @param cipherInstance 加密方法
+     * @return 所有具 mac-address 的迴路, 重複的 mac-address 只取第一個
+     */
+    public static TenantChannels fromLogin(JsonObject mqttObject, JsonArray channelsArray, String cipherInstance) {
+        String topic = mqttObject.getString("topic", "");
+        if (topic.isEmpty() || channelsArray.isEmpty()) {
+            return EMPTY;
+        }
+        List<Channel> channels = new ArrayList<>(channelsArray.size());
+        for (JsonValue value : channelsArray) {
+            if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+                continue;
+            }
+            JsonObject channelObject = value.asJsonObject();
+            String macAddress = channelObject.getString("mac-address", "");
+            if (macAddress.isEmpty() || channels.stream().anyMatch(channel -> channel.macAddress().equals(macAddress))) {
+                continue;
+            }
+            channels.add(new Channel(channels.size(), macAddress, channelObject.getString("channel-name", ""), channelObject.getString("device-code", ""),
+                    MqttSettings.topicPrefix(topic, macAddress), CryptoAES.getInstance(cipherInstance, MqttSettings.keySeed(topic, macAddress))));
+        }
+        return new TenantChannels(topic, channels.toArray(Channel[]::new));
+    }
+
+    /**
+     * @param topic 登入回應 mqtt 物件的 topic
+     * @param macAddresses 迴路的 mac-address
+     * @param cipherInstance 加密方法
+     * @return 依 mac-address 建立的 TenantChannels, 迴路名稱與電表代碼為空
+     */
+    public static TenantChannels of(String topic, List<String> macAddresses, String cipherInstance) {
+        Channel[] channels = new Channel[macAddresses.size()];
+        for (int i = 0; i < channels.length; i++) {
+            String macAddress = macAddresses.get(i);
+            channels[i] = new Channel(i, macAddress, "", "", MqttSettings.topicPrefix(topic, macAddress), CryptoAES.getInstance(cipherInstance, MqttSettings.keySeed(topic, macAddress)));
+        }
+        return new TenantChannels(topic, channels);
+    }
+
+    /**
+     * @param topicPrefix 迴路的 topic 前綴
+     * @param cryptoAES 該迴路的 CryptoAES 物件
+     * @return 只有一個迴路的 TenantChannels
+     */
+    public static TenantChannels single(String topicPrefix, CryptoAES cryptoAES) {
+        return new TenantChannels("", new Channel[]{new Channel(0, "", "", "", Objects.requireNonNull(topicPrefix), Objects.requireNonNull(cryptoAES))});
+    }
+
+    /**
+     * @return 登入回應 mqtt 物件的 topic
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    public int size() {
+        return channels.length;
+    }
+
+    public boolean isEmpty() {
+        return channels.length == 0;
+    }
+
+    public Channel get(int index) {
+        return channels[index];
+    }
+
+    public List<Channel> getChannels() {
+        return Collections.unmodifiableList(Arrays.asList(channels));
+    }
+
+    /**
+     * @return 每個迴路訂閱的 topic: 前綴/#, 多層萬用字元 # 也符合 前綴 本身, 不另外訂閱以免重疊的訂閱收到重複訊息
+     */
+    public String[] topicFilters() {
+        String[] filters = new String[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            filters[i] = channels[i].topicPrefix() + "/#";
+        }
+        return filters;
+    }
+
+    /**
+     * 依收到訊息的 topic 找出迴路: topic 等於前綴, 或為 前綴/... 的子 topic
+     *
+     * @param messageTopic 訊息的 topic
+     * @return 對應的迴路, 不屬於任何迴路時為 null
+     */
+    public Channel find(String messageTopic) {
+        String candidate = messageTopic;
+        while (true) {
+            Channel channel = byTopicPrefix.get(candidate);
+            if (Objects.nonNull(channel)) {
+                return channel;
+            }
+            int slash = candidate.lastIndexOf('/');
+            if (slash <= 0) {
+                return null;
+            }
+            candidate = candidate.substring(0, slash);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder().append(channels.length).append(" channels");
+        for (Channel channel : channels) {
+            builder.append(String.format("%n  %s %s %s", channel.topicPrefix(), channel.channelName(), channel.deviceCode()));
+        }
+        return builder.toString();
+    }
+}
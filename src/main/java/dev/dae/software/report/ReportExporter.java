@@ -0,0 +1,264 @@
+package dev.dae.software.report;
+
+import dev.dae.software.api.TenantApiClient;
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 以串流方式匯出 refund-report, credit-report: 回應經 BodyHandlers.ofInputStream 逐筆解析後直接寫入 CSV 或 NDJSON 檔案, 記憶體用量與報表大小無關
+ *
+ * @author Ben
+ */
+public class ReportExporter {
+
+    private final TenantApiClient api;
+
+    public ReportExporter(TenantApiClient api) {
+        this.api = Objects.requireNonNull(api);
+    }
+
+    /**
+     * 送出請求並將回應的 data 陣列逐筆寫入檔案
+     *
+     * @param bodyMap 請求參數
+     * @param sessionId PHPSESSID
+     * @param path 輸出檔案
+     * @param format 輸出格式
+     * @return 匯出結果
+     * @throws IOException 連線或寫入失敗, HTTP 狀態碼 400 以上, result 為 false, 或回應不是 JSON; 失敗時不建立或取代輸出檔案
+     * @throws InterruptedException 等待回應時被中斷
+     */
+    public ExportResult export(Map<String, String> bodyMap, String sessionId, Path path, Format format) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = api.getClient().send(api.buildRequest(bodyMap, sessionId), HttpResponse.BodyHandlers.ofInputStream());
+        long firstByteNanos = System.nanoTime() - start;
+        try (InputStream body = response.body()) {
+            if (response.statusCode() >= 400) {
+                throw new IOException(String.format("%s returned HTTP %d", bodyMap.get("d"), response.statusCode()));
+            }
+            // 先寫入同目錄的暫存檔, 完整寫入後再 rename 取代輸出檔案
+            Path tempPath = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                Result result;
+                try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                    result = write(body, writer, format);
+                }
+                if (!result.result()) {
+                    throw new IOException(String.format("%s returned result false: %s", bodyMap.get("d"), result.message()));
+                }
+                try {
+                    Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return new ExportResult(response.statusCode(), result.result(), result.message(), result.rows(), firstByteNanos, System.nanoTime() - start, path);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+        } catch (JsonException ex) {
+            throw new IOException(String.format("unreadable %s response", bodyMap.get("d")), ex);
+        }
+    }
+
+    /**
+     * 解析回應並將 data 陣列的每個物件寫成一列
+     *
+     * @param body 回應內容串流 (UTF-8)
+     * @param writer 輸出
+     * @param format 輸出格式
+     * @return 回應的 result, message 與寫入筆數
+     * @throws IOException 寫入失敗
+     * @throws JsonException 回應不是 JSON 物件
+     */
+    public static Result write(InputStream body, Writer writer, Format format) throws IOException {
+        boolean result = true;
+        String message = "";
+        long rows = 0;
+        try (JsonParser parser = Json.createParser(body)) {
+            if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+                throw new JsonException("response is not a JSON object");
+            }
+            RowWriter rowWriter = format == Format.CSV ? new CsvWriter(writer) : new NdjsonWriter(writer);
+            while (parser.next() == Event.KEY_NAME) {
+                String key = parser.getString();
+                Event event = parser.next();
+                if ("data".equals(key) && event == Event.START_ARRAY) {
+                    for (Event item = parser.next(); item != Event.END_ARRAY; item = parser.next()) {
+                        if (item == Event.START_OBJECT) {
+                            // 一次只建立一筆記錄
+                            rowWriter.write(parser.getObject());
+                            rows++;
+                        } else if (item == Event.START_ARRAY) {
+                            parser.skipArray();
+                        }
+                    }
+                } else if ("result".equals(key)) {
+                    result = event != Event.VALUE_FALSE;
+                    if (event == Event.START_OBJECT) {
+                        parser.skipObject();
+                    } else if (event == Event.START_ARRAY) {
+                        parser.skipArray();
+                    }
+                } else if ("message".equals(key) && event == Event.VALUE_STRING) {
+                    message = parser.getString();
+                } else if (event == Event.START_OBJECT) {
+                    parser.skipObject();
+                } else if (event == Event.START_ARRAY) {
+                    parser.skipArray();
+                }
+            }
+        }
+        writer.flush();
+        return new Result(result, message, rows);
+    }
+
+    /**
+     * 輸出格式
+     */
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * @param path 輸出檔案
+         * @return 副檔名為 .csv 時為 CSV, 否則為 NDJSON
+         */
+        public static Format of(Path path) {
+            return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    /**
+     * 回應的 result, message 與寫入筆數
+     */
+    public record Result(boolean result, String message, long rows) {
+    }
+
+    /**
+     * 匯出結果
+     *
+     * @param statusCode HTTP 狀態碼
+     * @param result 回應的 result
+     * @param message 回應的 message
+     * @param rows 寫入筆數
+     * @param firstByteNanos 送出到收到回應標頭的時間
+     * @param elapsedNanos 送出到寫入完成的時間
+     * @param path 輸出檔案
+     */
+    public record ExportResult(int statusCode, boolean result, String message, long rows, long firstByteNanos, long elapsedNanos, Path path) {
+
+        /**
+         * @return 每秒寫入筆數, 含等待回應標頭的時間
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos <= 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return 收到回應標頭後的每秒寫入筆數
+         */
+        public double getStreamingRowsPerSecond() {
+            long streamingNanos = elapsedNanos - firstByteNanos;
+            return streamingNanos <= 0 ? 0 : rows * 1e9 / streamingNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("status = %d, result = %s%s, rows = %d, first byte = %.2f ms, elapsed = %.2f ms, %.1f rows/s (%.1f rows/s after first byte), file = %s",
+                    statusCode, result, message.isEmpty() ? "" : ", message = " + message, rows, firstByteNanos / 1e6, elapsedNanos / 1e6,
+                    getRowsPerSecond(), getStreamingRowsPerSecond(), path);
+        }
+    }
+
+    private interface RowWriter {
+
+        void write(JsonObject row) throws IOException;
+    }
+
+    private static class NdjsonWriter implements RowWriter {
+
+        private final Writer writer;
+
+        private NdjsonWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(JsonObject row) throws IOException {
+            writer.write(row.toString());
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * 欄位取自第一筆記錄; 之後記錄缺少的欄位留空, 多出的欄位捨棄
+     */
+    private static class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+        private List<String> columns;
+
+        private CsvWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(JsonObject row) throws IOException {
+            if (Objects.isNull(columns)) {
+                columns = new ArrayList<>(row.keySet());
+                writeLine(columns);
+            }
+            List<String> values = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                values.add(text(row.get(column)));
+            }
+            writeLine(values);
+        }
+
+        private static String text(JsonValue value) {
+            if (Objects.isNull(value) || value == JsonValue.NULL) {
+                return "";
+            }
+            return value instanceof JsonString string ? string.getString() : value.toString();
+        }
+
+        private void writeLine(List<String> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(values.get(i));
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package dev.dae.software.session;
+
+import dev.dae.software.api.TenantProfile;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多位模擬房客的登入狀態池
+ * <p>
+ * 以帳號查詢與輪流挑選都不加鎖: 查詢使用 ConcurrentHashMap, 輪流挑選使用新增房客時重建的陣列快照
+ *
+ * @author Ben
+ */
+public class SessionPool {
+
+    private final ConcurrentHashMap<String, TenantSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+    private volatile TenantSession[] snapshot = new TenantSession[0];
+
+    /**
+     * @param profiles 房客參數
+     * @return 包含所有房客的 SessionPool 物件
+     */
+    public static SessionPool of(Collection<TenantProfile> profiles) {
+        SessionPool pool = new SessionPool();
+        profiles.forEach(pool::add);
+        return pool;
+    }
+
+    /**
+     * 讀取房客清單, 每行為 username,password,user-code[,device-code[,channel-name]], 空白行與 # 開頭的行略過
+     *
+     * @param path 清單檔案
+     * @return 包含所有房客的 SessionPool 物件
+     * @throws IOException 讀取失敗
+     */
+    public static SessionPool load(Path path) throws IOException {
+        SessionPool pool = new SessionPool();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                pool.add(parseProfile(line));
+            } catch (IllegalArgumentException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @param line username,password,user-code[,device-code[,channel-name]]
+     * @return 房客參數
+     * @throws IllegalArgumentException 欄位不足
+     */
+    public static TenantProfile parseProfile(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 3) {
+            throw new IllegalArgumentException(String.format("invalid tenant line: %s", line));
+        }
+        TenantProfile profile = new TenantProfile(fields[0].trim(), fields[1].trim(), fields[2].trim());
+        if (fields.length > 3) {
+            profile.setDeviceCode(fields[3].trim());
+        }
+        if (fields.length > 4) {
+            profile.setChannelName(fields[4].trim());
+        }
+        return profile;
+    }
+
+    /**
+     * 新增房客, 帳號已存在時回傳原有的 TenantSession
+     *
+     * @param profile 房客參數
+     * @return 房客的 TenantSession 物件
+     */
+    public TenantSession add(TenantProfile profile) {
+        TenantSession existing = sessions.get(profile.getUsername());
+        if (Objects.nonNull(existing)) {
+            return existing;
+        }
+        TenantSession session = new TenantSession(profile);
+        existing = sessions.putIfAbsent(profile.getUsername(), session);
+        if (Objects.nonNull(existing)) {
+            return existing;
+        }
+        synchronized (this) {
+            TenantSession[] current = snapshot;
+            TenantSession[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = session;
+            snapshot = next;
+        }
+        return session;
+    }
+
+    /**
+     * @param username 帳號
+     * @return 房客的 TenantSession 物件
+     */
+    public Optional<TenantSession> get(String username) {
+        return Optional.ofNullable(sessions.get(username));
+    }
+
+    /**
+     * 輪流挑選下一位房客
+     *
+     * @return 房客的 TenantSession 物件
+     * @throws IllegalStateException 池中沒有房客
+     */
+    public TenantSession next() {
+        TenantSession[] current = snapshot;
+        if (current.length == 0) {
+            throw new IllegalStateException("session pool is empty");
+        }
+        return current[(cursor.getAndIncrement() & Integer.MAX_VALUE) % current.length];
+    }
+
+    public int size() {
+        return snapshot.length;
+    }
+
+    /**
+     * @return 依加入順序排列的所有房客
+     */
+    public List<TenantSession> sessions() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot));
+    }
+}
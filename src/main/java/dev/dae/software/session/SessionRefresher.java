@@ -0,0 +1,162 @@
+package dev.dae.software.session;
+
+import dev.dae.software.util.ThreadPools;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 依每個 PHPSESSID 的 Max-Age 到期時間, 在到期前重新登入
+ * <p>
+ * 重新登入的時間點為 Cookie 效期的 earliest 到 latest 比例之間的隨機值, 同時登入的房客會分散在一段時間內更新, 不會同時到期再一起湧向登入服務. 排定時間到時若 Cookie 已被其他請求更新 (例如伺服器延長效期), 只依新的 Cookie 重新排定
+ *
+ * @author Ben
+ */
+public class SessionRefresher implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionRefresher.class.getName());
+    private static final int MAX_ATTEMPTS = 5;
+    private final Predicate<TenantSession> login;
+    private final double earliest;
+    private final double latest;
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, ThreadPools.daemonThreadFactory("session-refresh-timer"));
+    private final ExecutorService loginExecutor = ThreadPools.newPerTaskExecutor("session-refresh");
+    private final ConcurrentHashMap<TenantSession, Scheduled> scheduled = new ConcurrentHashMap<>();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param login 重新登入並更新 TenantSession 的 Cookie, 成功時回傳 true; 在背景執行緒上執行, 可阻塞
+     * @param earliest 最早在效期的哪個比例重新登入, 例如 0.75
+     * @param latest 最晚在效期的哪個比例重新登入, 例如 0.9
+     */
+    public SessionRefresher(Predicate<TenantSession> login, double earliest, double latest) {
+        if (earliest <= 0 || latest >= 1 || earliest > latest) {
+            throw new IllegalArgumentException("require 0 < earliest <= latest < 1");
+        }
+        this.login = Objects.requireNonNull(login);
+        this.earliest = earliest;
+        this.latest = latest;
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 依目前的 Cookie 排定 (或重新排定) 重新登入; 未登入或到期時間未知時不排定
+     *
+     * @param session 房客登入狀態
+     */
+    public void track(TenantSession session) {
+        TenantSession.SessionCookie cookie = session.getCookie();
+        long now = System.currentTimeMillis();
+        if (cookie.sessionId().isEmpty() || cookie.expiresAt() == 0 || cookie.expiresAt() <= now) {
+            untrack(session);
+            return;
+        }
+        long base = cookie.updatedAt() > 0 && cookie.updatedAt() < cookie.expiresAt() ? cookie.updatedAt() : now;
+        double fraction = earliest + ThreadLocalRandom.current().nextDouble() * (latest - earliest);
+        long refreshAt = base + (long) ((cookie.expiresAt() - base) * fraction);
+        schedule(session, cookie, 0, Math.max(0, refreshAt - now));
+    }
+
+    /**
+     * @param session 房客登入狀態
+     */
+    public void untrack(TenantSession session) {
+        Scheduled previous = scheduled.remove(session);
+        if (Objects.nonNull(previous)) {
+            previous.future().cancel(false);
+        }
+    }
+
+    /**
+     * @param session 房客登入狀態
+     * @return 排定的重新登入時間 (epoch 毫秒), 未排定時為 0
+     */
+    public long getRefreshAt(TenantSession session) {
+        Scheduled current = scheduled.get(session);
+        return Objects.isNull(current) ? 0 : current.refreshAt();
+    }
+
+    public int getTrackedCount() {
+        return scheduled.size();
+    }
+
+    public long getRefreshed() {
+        return refreshed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 統計摘要
+     */
+    public String summary() {
+        long now = System.currentTimeMillis();
+        long next = scheduled.values().stream().mapToLong(Scheduled::refreshAt).min().orElse(0);
+        return String.format("session refresh: tracked = %d, refreshed = %d, deferred = %d, failed = %d, next in %s",
+                getTrackedCount(), getRefreshed(), deferred.sum(), getFailed(), next == 0 ? "-" : String.format("%.1f s", Math.max(0, next - now) / 1000.0));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        loginExecutor.shutdownNow();
+        scheduled.clear();
+    }
+
+    private void schedule(TenantSession session, TenantSession.SessionCookie cookie, int attempt, long delayMillis) {
+        if (closed) {
+            return;
+        }
+        ScheduledFuture<?> future = scheduler.schedule(() -> fire(session, cookie, attempt), delayMillis, TimeUnit.MILLISECONDS);
+        Scheduled previous = scheduled.put(session, new Scheduled(future, System.currentTimeMillis() + delayMillis));
+        if (Objects.nonNull(previous)) {
+            previous.future().cancel(false);
+        }
+    }
+
+    private void fire(TenantSession session, TenantSession.SessionCookie cookie, int attempt) {
+        if (session.getCookie() != cookie) {
+            // 其他請求已更新 Cookie, 依新的到期時間重新排定
+            deferred.increment();
+            track(session);
+            return;
+        }
+        loginExecutor.execute(() -> {
+            boolean success;
+            try {
+                success = login.test(session);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, String.format("cannot refresh session of %s", session.getUsername()), ex);
+                success = false;
+            }
+            if (success && session.getCookie() != cookie) {
+                refreshed.increment();
+                track(session);
+            } else if (attempt + 1 < MAX_ATTEMPTS) {
+                failed.increment();
+                schedule(session, cookie, attempt + 1, Math.min(1000L << attempt, 30_000));
+            } else {
+                failed.increment();
+                untrack(session);
+                LOGGER.log(Level.WARNING, "gave up refreshing session of {0}", session.getUsername());
+            }
+        });
+    }
+
+    private record Scheduled(ScheduledFuture<?> future, long refreshAt) {
+    }
+}
@@ -0,0 +1,154 @@
+package dev.dae.software.session;
+
+import dev.dae.software.api.TenantApiClient;
+import dev.dae.software.api.TenantProfile;
+import dev.dae.software.mqtt.TenantChannels;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 一位模擬房客的登入狀態: 帳號參數, PHPSESSID, Max-Age 到期時間與登入回應資料
+ * <p>
+ * Cookie 與登入資料皆以不可變物件整體替換, 讀取不需加鎖
+ *
+ * @author Ben
+ */
+public class TenantSession {
+
+    private final TenantProfile profile;
+    private volatile SessionCookie cookie = SessionCookie.EMPTY;
+    private volatile JsonObject loginData = JsonValue.EMPTY_JSON_OBJECT;
+    private volatile DerivedChannels derivedChannels;
+
+    public TenantSession(TenantProfile profile) {
+        this.profile = Objects.requireNonNull(profile);
+    }
+
+    public TenantProfile getProfile() {
+        return profile;
+    }
+
+    public String getUsername() {
+        return profile.getUsername();
+    }
+
+    public SessionCookie getCookie() {
+        return cookie;
+    }
+
+    /**
+     * @return PHPSESSID, 尚未登入時為空字串
+     */
+    public String getSessionId() {
+        return cookie.sessionId();
+    }
+
+    /**
+     * @param now 現在時間 (epoch 毫秒)
+     * @return 是否持有未過期的 PHPSESSID
+     */
+    public boolean isActive(long now) {
+        SessionCookie current = cookie;
+        return !current.sessionId().isEmpty() && (current.expiresAt() == 0 || current.expiresAt() > now);
+    }
+
+    public void setCookie(SessionCookie cookie) {
+        this.cookie = Objects.requireNonNull(cookie);
+    }
+
+    /**
+     * 依 Set-Cookie 標頭更新 PHPSESSID 與到期時間; 沒有 Max-Age 時 (PHP 預設的 session cookie) 只有相同的 PHPSESSID 沿用原到期時間, 新的 PHPSESSID 到期時間為 0 (未知)
+     *
+     * @param setCookie Set-Cookie 標頭
+     * @return 是否有更新
+     */
+    public boolean updateFromSetCookie(String setCookie) {
+        Map<String, String> map = TenantApiClient.parseSetCookie(setCookie);
+        String sessionId = map.get("PHPSESSID");
+        if (Objects.isNull(sessionId) || sessionId.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = sessionId.equals(cookie.sessionId()) ? cookie.expiresAt() : 0;
+        if (map.containsKey("Max-Age")) {
+            try {
+                expiresAt = now + Long.parseLong(map.get("Max-Age")) * 1000;
+            } catch (NumberFormatException ex) {
+                expiresAt = 0;
+            }
+        }
+        cookie = new SessionCookie(sessionId, now, expiresAt);
+        return true;
+    }
+
+    public void clear() {
+        cookie = SessionCookie.EMPTY;
+        loginData = JsonValue.EMPTY_JSON_OBJECT;
+        derivedChannels = null;
+    }
+
+    /**
+     * @return 登入回應的 data 物件, 尚未登入時為空物件
+     */
+    public JsonObject getLoginData() {
+        return loginData;
+    }
+
+    public void setLoginData(JsonObject loginData) {
+        this.loginData = Objects.isNull(loginData) ? JsonValue.EMPTY_JSON_OBJECT : loginData;
+        this.derivedChannels = null;
+    }
+
+    /**
+     * @return 登入回應的 mqtt 物件, 不存在時為空物件
+     */
+    public JsonObject getMqtt() {
+        JsonObject mqtt = loginData.getJsonObject("mqtt");
+        return Objects.isNull(mqtt) ? JsonValue.EMPTY_JSON_OBJECT : mqtt;
+    }
+
+    /**
+     * @return 登入回應的 channels 陣列, 不存在時為空陣列
+     */
+    public JsonArray getChannels() {
+        JsonArray channels = loginData.getJsonArray("channels");
+        return Objects.isNull(channels) ? JsonValue.EMPTY_JSON_ARRAY : channels;
+    }
+
+    /**
+     * 由登入回應衍生所有迴路的 topic 前綴與 CryptoAES, 同一份登入資料只衍生一次
+     *
+     * @param cipherInstance 加密方法
+     * @return 所有迴路, 尚未登入時為 {@link TenantChannels#EMPTY}
+     */
+    public TenantChannels getTenantChannels(String cipherInstance) {
+        JsonObject data = loginData;
+        DerivedChannels derived = derivedChannels;
+        if (Objects.nonNull(derived) && derived.loginData() == data && derived.cipherInstance().equals(cipherInstance)) {
+            return derived.channels();
+        }
+        JsonObject mqtt = data.getJsonObject("mqtt");
+        JsonArray channels = data.getJsonArray("channels");
+        TenantChannels tenantChannels = Objects.isNull(mqtt) || Objects.isNull(channels) ? TenantChannels.EMPTY : TenantChannels.fromLogin(mqtt, channels, cipherInstance);
+        derivedChannels = new DerivedChannels(data, cipherInstance, tenantChannels);
+        return tenantChannels;
+    }
+
+    private record DerivedChannels(JsonObject loginData, String cipherInstance, TenantChannels channels) {
+    }
+
+    /**
+     * PHPSESSID 與其更新, 到期時間 (epoch 毫秒, 0 表示未知)
+     */
+    public record SessionCookie(String sessionId, long updatedAt, long expiresAt) {
+
+        public static final SessionCookie EMPTY = new SessionCookie("", 0, 0);
+
+        public SessionCookie {
+            Objects.requireNonNull(sessionId);
+        }
+    }
+}
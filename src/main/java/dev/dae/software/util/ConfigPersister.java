@@ -0,0 +1,137 @@
+package dev.dae.software.util;
+
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 設定檔的 write-behind 寫入: 多次更新合併為最後一次, 由背景執行緒定期或於關閉時寫入, 並以暫存檔與 rename 保證檔案不會只寫一半
+ *
+ * @author Ben
+ */
+public class ConfigPersister implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigPersister.class.getName());
+    private final Path path;
+    private final AtomicReference<JsonObject> pending = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(ThreadPools.daemonThreadFactory("config-persister"));
+    private final Thread shutdownHook = new Thread(this::flush, "config-persister-shutdown");
+
+    /**
+     * @param path 設定檔路徑
+     * @param flushInterval 寫入間隔
+     */
+    public ConfigPersister(Path path, Duration flushInterval) {
+        this.path = Objects.requireNonNull(path);
+        long intervalMillis = Math.max(1, flushInterval.toMillis());
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 讀取設定檔; 檔案不存在時為 empty, 內容無法解析時將檔案更名為 .corrupt 保留並回傳 empty
+     *
+     * @param path 設定檔路徑
+     * @return 設定的 Optional 物件
+     */
+    public static Optional<JsonObject> read(Path path) {
+        if (Files.notExists(path)) {
+            return Optional.empty();
+        }
+        try {
+            String configString = Files.readString(path, StandardCharsets.UTF_8);
+            if (configString.isBlank()) {
+                return Optional.empty();
+            }
+            try (JsonReader reader = Json.createReader(new StringReader(configString))) {
+                return Optional.of(reader.readObject());
+            }
+        } catch (JsonException ex) {
+            Path corruptPath = path.resolveSibling(path.getFileName() + ".corrupt");
+            LOGGER.log(Level.WARNING, String.format("unreadable config %s, moved to %s", path, corruptPath), ex);
+            try {
+                Files.move(path, corruptPath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveEx) {
+                LOGGER.log(Level.SEVERE, null, moveEx);
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 先寫入同目錄的暫存檔再 rename 取代原檔
+     *
+     * @param path 設定檔路徑
+     * @param content 內容
+     * @throws IOException 寫入失敗
+     */
+    public static void writeAtomically(Path path, String content) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(tempPath, content, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 登記要寫入的設定, 尚未寫入的前一份設定會被取代
+     *
+     * @param config 設定
+     */
+    public void submit(JsonObject config) {
+        pending.set(Objects.requireNonNull(config));
+    }
+
+    /**
+     * 立即寫入尚未寫入的設定
+     */
+    public synchronized void flush() {
+        JsonObject config = pending.getAndSet(null);
+        if (Objects.isNull(config)) {
+            return;
+        }
+        try {
+            writeAtomically(path, config.toString());
+        } catch (IOException ex) {
+            pending.compareAndSet(null, config);
+            LOGGER.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flush();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ex) {
+            // JVM 正在關閉, shutdown hook 會自行執行
+        }
+    }
+}
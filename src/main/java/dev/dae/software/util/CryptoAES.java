@@ -1,72 +1,339 @@
 package dev.dae.software.util;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 /**
+ * AES 加解密, 密文格式為 Base64(IV + ciphertext), 金鑰為 SHA-256(keySeed)
+ * <p>
+ * 以 getInstance 取得的物件快取衍生後的金鑰; Cipher, IV 亂數產生器與暫存陣列為每條執行緒各一份, 重複使用不需同步
  *
  * @author Ben
  */
 public class CryptoAES {
 
+    public static final String DEFAULT_CIPHER_INSTANCE = "AES/CBC/PKCS7Padding";
+    private static final int BLOCK_SIZE = 16;
+    private static final byte[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final int[] BASE64_VALUES = new int[128];
+    private static final ConcurrentHashMap<String, CryptoAES> ENGINES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<ThreadState> THREAD_STATE = ThreadLocal.withInitial(ThreadState::new);
+    private final String cipherInstance;
+    private final SecretKeySpec secretKey;
+
+    static {
+        if (Objects.isNull(Security.getProvider(BouncyCastleProvider.PROVIDER_NAME))) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        Arrays.fill(BASE64_VALUES, -1);
+        for (int i = 0; i < BASE64_ALPHABET.length; i++) {
+            BASE64_VALUES[BASE64_ALPHABET[i]] = i;
+        }
+    }
+
+    private CryptoAES(String cipherInstance, String keySeed) throws NoSuchAlgorithmException {
+        this.cipherInstance = cipherInstance;
+        this.secretKey = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(keySeed.getBytes(StandardCharsets.UTF_8)), "AES");
+    }
+
+    /**
+     * 註冊 BouncyCastle 並建立一次 Cipher, 讓 Provider 的驗證與類別載入在背景執行緒上完成, 不延遲第一則訊息的解密
+     *
+     * @param cipherInstance Cipher 名稱
+     */
+    public static void preload(String cipherInstance) {
+        try {
+            Cipher.getInstance(cipherInstance);
+        } catch (GeneralSecurityException ex) {
+            Logger.getLogger(CryptoAES.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    /**
+     * @param keySeed 金鑰種子, 例如 topic+mac-address
+     * @return 使用 AES/CBC/PKCS7Padding 的 CryptoAES 物件
+     */
+    public static CryptoAES getInstance(String keySeed) {
+        return getInstance(DEFAULT_CIPHER_INSTANCE, keySeed);
+    }
+
+    /**
+     * @param cipherInstance Cipher 名稱
+     * @param keySeed 金鑰種子
+     * @return 快取的 CryptoAES 物件
+     */
+    public static CryptoAES getInstance(String cipherInstance, String keySeed) {
+        return ENGINES.computeIfAbsent(cipherInstance + '\n' + keySeed, key -> {
+            try {
+                return new CryptoAES(cipherInstance, keySeed);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    /**
+     * @param base64Length 密文 Base64 長度
+     * @return 解密後明文長度的上限, 用於配置 decrypt 的輸出陣列
+     */
+    public static int maxDecryptedLength(int base64Length) {
+        return Math.max(0, base64Length / 4 * 3 - BLOCK_SIZE);
+    }
+
+    /**
+     * @param plaintextLength 明文長度
+     * @return 加密後 Base64 密文的長度上限
+     */
+    public static int maxEncryptedLength(int plaintextLength) {
+        return (BLOCK_SIZE + (plaintextLength / BLOCK_SIZE + 1) * BLOCK_SIZE + 2) / 3 * 4;
+    }
+
+    /**
+     * @param plaintext 明文
+     * @return Base64(IV + ciphertext)
+     * @throws GeneralSecurityException 加密失敗
+     */
+    public byte[] encrypt(byte[] plaintext) throws GeneralSecurityException {
+        byte[] output = new byte[maxEncryptedLength(plaintext.length)];
+        int length = encrypt(plaintext, 0, plaintext.length, output, 0);
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    /**
+     * @param plaintext 明文
+     * @param offset 明文起始位置
+     * @param length 明文長度
+     * @param output 輸出陣列, 長度需至少 maxEncryptedLength(length)
+     * @param outputOffset 輸出起始位置
+     * @return 寫入 output 的 Base64 長度
+     * @throws GeneralSecurityException 加密失敗
+     */
+    public int encrypt(byte[] plaintext, int offset, int length, byte[] output, int outputOffset) throws GeneralSecurityException {
+        ThreadState state = THREAD_STATE.get();
+        Cipher cipher = state.cipher(cipherInstance);
+        int ivLength = cipher.getBlockSize();
+        state.random.nextBytes(state.iv);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(state.iv));
+        byte[] raw = state.raw(ivLength + cipher.getOutputSize(length));
+        System.arraycopy(state.iv, 0, raw, 0, ivLength);
+        int rawLength = ivLength + cipher.doFinal(plaintext, offset, length, raw, ivLength);
+        return encodeBase64(raw, rawLength, output, outputOffset);
+    }
+
+    /**
+     * @param plaintext 明文, 由 position 讀到 limit
+     * @param output Base64 密文輸出, 由 position 開始寫入
+     * @return 寫入的 Base64 長度
+     * @throws GeneralSecurityException 加密失敗
+     */
+    public int encrypt(ByteBuffer plaintext, ByteBuffer output) throws GeneralSecurityException {
+        int length = plaintext.remaining();
+        ThreadState state = THREAD_STATE.get();
+        byte[] input = state.input(length);
+        plaintext.get(input, 0, length);
+        byte[] encoded = state.output(maxEncryptedLength(length));
+        int encodedLength = encrypt(input, 0, length, encoded, 0);
+        output.put(encoded, 0, encodedLength);
+        return encodedLength;
+    }
+
+    /**
+     * @param base64 Base64(IV + ciphertext)
+     * @return 明文
+     * @throws GeneralSecurityException 解密失敗
+     */
+    public byte[] decrypt(byte[] base64) throws GeneralSecurityException {
+        byte[] output = new byte[maxDecryptedLength(base64.length)];
+        int length = decrypt(base64, 0, base64.length, output, 0);
+        return length == output.length ? output : Arrays.copyOf(output, length);
+    }
+
+    /**
+     * 解密至呼叫端提供的陣列, 除了 IvParameterSpec 外不配置物件
+     *
+     * @param base64 Base64(IV + ciphertext)
+     * @param offset 起始位置
+     * @param length 長度
+     * @param output 明文輸出陣列, 長度需至少 maxDecryptedLength(length)
+     * @param outputOffset 輸出起始位置
+     * @return 明文長度
+     * @throws GeneralSecurityException 解密失敗
+     * @throws IllegalArgumentException 不是合法的 Base64
+     */
+    public int decrypt(byte[] base64, int offset, int length, byte[] output, int outputOffset) throws GeneralSecurityException {
+        ThreadState state = THREAD_STATE.get();
+        Cipher cipher = state.cipher(cipherInstance);
+        int ivLength = cipher.getBlockSize();
+        byte[] raw = state.raw(length / 4 * 3 + 3);
+        int rawLength = decodeBase64(base64, offset, length, raw);
+        if (rawLength <= ivLength) {
+            throw new GeneralSecurityException(String.format("encrypted content too short: %d bytes", rawLength));
+        }
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(raw, 0, ivLength));
+        return cipher.doFinal(raw, ivLength, rawLength - ivLength, output, outputOffset);
+    }
+
+    /**
+     * @param base64 Base64(IV + ciphertext), 由 position 讀到 limit
+     * @param output 明文輸出, 由 position 開始寫入
+     * @return 明文長度
+     * @throws GeneralSecurityException 解密失敗
+     */
+    public int decrypt(ByteBuffer base64, ByteBuffer output) throws GeneralSecurityException {
+        int length = base64.remaining();
+        ThreadState state = THREAD_STATE.get();
+        byte[] input = state.input(length);
+        base64.get(input, 0, length);
+        byte[] decrypted = state.output(maxDecryptedLength(length));
+        int decryptedLength = decrypt(input, 0, length, decrypted, 0);
+        output.put(decrypted, 0, decryptedLength);
+        return decryptedLength;
+    }
+
+    /**
+     * @param content Base64(IV + ciphertext)
+     * @return UTF-8 明文
+     * @throws GeneralSecurityException 解密失敗
+     */
+    public String decryptToString(String content) throws GeneralSecurityException {
+        return new String(decrypt(content.getBytes(StandardCharsets.US_ASCII)), StandardCharsets.UTF_8);
+    }
+
+    private static int encodeBase64(byte[] source, int length, byte[] output, int outputOffset) {
+        int position = outputOffset;
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int bits = (source[i] & 0xff) << 16 | (source[i + 1] & 0xff) << 8 | (source[i + 2] & 0xff);
+            output[position++] = BASE64_ALPHABET[bits >>> 18 & 0x3f];
+            output[position++] = BASE64_ALPHABET[bits >>> 12 & 0x3f];
+            output[position++] = BASE64_ALPHABET[bits >>> 6 & 0x3f];
+            output[position++] = BASE64_ALPHABET[bits & 0x3f];
+        }
+        int remaining = length - i;
+        if (remaining > 0) {
+            int bits = (source[i] & 0xff) << 16 | (remaining == 2 ? (source[i + 1] & 0xff) << 8 : 0);
+            output[position++] = BASE64_ALPHABET[bits >>> 18 & 0x3f];
+            output[position++] = BASE64_ALPHABET[bits >>> 12 & 0x3f];
+            output[position++] = remaining == 2 ? BASE64_ALPHABET[bits >>> 6 & 0x3f] : (byte) '=';
+            output[position++] = '=';
+        }
+        return position - outputOffset;
+    }
+
+    private static int decodeBase64(byte[] source, int offset, int length, byte[] output) {
+        int end = offset + length;
+        while (end > offset && (source[end - 1] == '=' || source[end - 1] == '\n' || source[end - 1] == '\r')) {
+            end--;
+        }
+        int bits = 0;
+        int bitCount = 0;
+        int position = 0;
+        for (int i = offset; i < end; i++) {
+            int c = source[i];
+            int value = c >= 0 && c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException(String.format("illegal base64 character 0x%02x", c & 0xff));
+            }
+            bits = bits << 6 | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                output[position++] = (byte) (bits >>> bitCount);
+            }
+        }
+        return position;
+    }
+
     public static byte[] aesEncryptContent(String content, String cipherInstance, String keySeed) {
         byte[] resultContent = null;
         try {
-            Security.addProvider(new BouncyCastleProvider());
-            Cipher cipher = Cipher.getInstance(cipherInstance, "BC");
-            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
-            final byte[] key = sha256.digest(keySeed.getBytes(StandardCharsets.UTF_8));
-            SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
-            int ivLength = cipher.getBlockSize();
-            byte[] iv = new byte[ivLength];
-            SecureRandom.getInstanceStrong().nextBytes(iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(iv));
-            final byte[] b = cipher.doFinal(content.getBytes(StandardCharsets.UTF_8));
-            byte[] encryptedByteArray = Arrays.copyOf(iv, iv.length + b.length);
-            System.arraycopy(b, 0, encryptedByteArray, iv.length, b.length);
-            resultContent = Base64.getEncoder().encode(encryptedByteArray);
-        } catch (NoSuchProviderException | NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException ex) {
+            resultContent = getInstance(cipherInstance, keySeed).encrypt(content.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException | IllegalStateException ex) {
             Logger.getLogger(CryptoAES.class.getName()).log(Level.SEVERE, null, ex);
         }
         return resultContent;
     }
-    
 
     public static String aesDecryptContent(String content, String cipherInstance, String keySeed) {
         String resultContent = "";
         try {
-            Security.addProvider(new BouncyCastleProvider());
-            Cipher cipher = Cipher.getInstance(cipherInstance, "BC");
-            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
-            final byte[] key = sha256.digest(keySeed.getBytes(StandardCharsets.UTF_8));
-            SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
-            int ivLength = cipher.getBlockSize();
-            byte[] base64DecodeBytes = Base64.getDecoder().decode(content.getBytes(StandardCharsets.UTF_8));
-            byte[] iv = Arrays.copyOfRange(base64DecodeBytes, 0, ivLength);
-            byte[] encryptedBytes = Arrays.copyOfRange(base64DecodeBytes, ivLength, base64DecodeBytes.length);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-            final byte[] b = cipher.doFinal(encryptedBytes);
-            resultContent = new String(b, StandardCharsets.UTF_8);
-        } catch (NoSuchProviderException | NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException ex) {
+            resultContent = getInstance(cipherInstance, keySeed).decryptToString(content);
+        } catch (GeneralSecurityException | IllegalArgumentException | IllegalStateException ex) {
             Logger.getLogger(CryptoAES.class.getName()).log(Level.SEVERE, null, ex);
         }
         return resultContent;
     }
+
+    /**
+     * 每條執行緒的 Cipher, IV 亂數產生器與暫存陣列
+     */
+    private static class ThreadState {
+
+        private final Map<String, Cipher> ciphers = new HashMap<>(2);
+        private final SecureRandom random = newIvRandom();
+        private final byte[] iv = new byte[BLOCK_SIZE];
+        private byte[] raw = new byte[256];
+        private byte[] input = new byte[256];
+        private byte[] output = new byte[256];
+
+        /**
+         * DRBG 不會像 getInstanceStrong 在 Linux 上等待 /dev/random 而阻塞
+         */
+        private static SecureRandom newIvRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException ex) {
+                return new SecureRandom();
+            }
+        }
+
+        Cipher cipher(String cipherInstance) throws GeneralSecurityException {
+            Cipher cipher = ciphers.get(cipherInstance);
+            if (Objects.isNull(cipher)) {
+                cipher = Cipher.getInstance(cipherInstance, BouncyCastleProvider.PROVIDER_NAME);
+                if (cipher.getBlockSize() != BLOCK_SIZE) {
+                    throw new GeneralSecurityException(String.format("unsupported block size %d for %s", cipher.getBlockSize(), cipherInstance));
+                }
+                ciphers.put(cipherInstance, cipher);
+            }
+            return cipher;
+        }
+
+        byte[] raw(int length) {
+            if (raw.length < length) {
+                raw = new byte[Integer.highestOneBit(length) << 1];
+            }
+            return raw;
+        }
+
+        byte[] input(int length) {
+            if (input.length < length) {
+                input = new byte[Integer.highestOneBit(length) << 1];
+            }
+            return input;
+        }
+
+        byte[] output(int length) {
+            if (output.length < length) {
+                output = new byte[Integer.highestOneBit(length) << 1];
+            }
+            return output;
+        }
+    }
 }
@@ -1,9 +1,48 @@
 package dev.dae.software.util;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
 /**
+ * 房客 API 主機的環境與其連線/請求逾時
  *
  * @author Ben
  */
 public enum HostEnvironment {
-    DEVELOPMENT, LABORATORY, PRODUCTION, 
+    DEVELOPMENT("clh25.dev.tw", Duration.ofSeconds(5), Duration.ofSeconds(10)),
+    LABORATORY("clhlabs.dae.tw", Duration.ofSeconds(3), Duration.ofSeconds(5)),
+    PRODUCTION("clh25.dae.tw", Duration.ofSeconds(3), Duration.ofSeconds(3)),;
+
+    private final String host;
+    private final Duration connectTimeout;
+    private final Duration requestTimeout;
+
+    private HostEnvironment(String host, Duration connectTimeout, Duration requestTimeout) {
+        this.host = host;
+        this.connectTimeout = connectTimeout;
+        this.requestTimeout = requestTimeout;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param host 主機名稱, 可含連接埠
+     * @return 對應的環境, 非已知主機時為 empty
+     */
+    public static Optional<HostEnvironment> ofHost(String host) {
+        int index = host.indexOf(':');
+        String name = index < 0 ? host : host.substring(0, index);
+        return Arrays.stream(values()).filter(environment -> environment.host.equalsIgnoreCase(name)).findFirst();
+    }
 }
@@ -0,0 +1,80 @@
+package dev.dae.software.util;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 啟動時間紀錄: 各階段的開始時間 (自建立起算), 耗時與執行緒, 以及 JVM 啟動到建立之間的時間
+ *
+ * @author Ben
+ */
+public class StartupProfile {
+
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+    private final long jvmStartMillis = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * @param name 階段名稱
+     * @param supplier 要計時的動作
+     * @return 動作的結果
+     */
+    public <T> T time(String name, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            add(new Phase(name, Thread.currentThread().getName(), start - startNanos, System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * @param name 階段名稱
+     * @param runnable 要計時的動作
+     */
+    public void time(String name, Runnable runnable) {
+        time(name, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * 記錄一個時間點, 例如視窗顯示
+     *
+     * @param name 時間點名稱
+     */
+    public void mark(String name) {
+        add(new Phase(name, Thread.currentThread().getName(), System.nanoTime() - startNanos, -1));
+    }
+
+    /**
+     * @return 依開始時間排序的啟動紀錄
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("startup: jvm -> main = %s%n", jvmStartMillis == 0 ? "unknown" : String.format("%d ms", startMillis - jvmStartMillis)));
+        List<Phase> sorted;
+        synchronized (phases) {
+            sorted = new ArrayList<>(phases);
+        }
+        sorted.sort(Comparator.comparingLong(Phase::offsetNanos));
+        sorted.forEach(phase -> builder.append(phase.durationNanos() < 0
+                ? String.format("  %8.1f ms  %-24s%n", phase.offsetNanos() / 1e6, phase.name())
+                : String.format("  %8.1f ms  %-24s %8.1f ms  [%s]%n", phase.offsetNanos() / 1e6, phase.name(), phase.durationNanos() / 1e6, phase.thread())));
+        return builder.toString();
+    }
+
+    private void add(Phase phase) {
+        synchronized (phases) {
+            phases.add(phase);
+        }
+    }
+
+    private record Phase(String name, String thread, long offsetNanos, long durationNanos) {
+    }
+}
@@ -0,0 +1,232 @@
+package dev.dae.software.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 固定容量的狀態紀錄: 任何執行緒皆可寫入, 不接觸 Swing; 被擠出環狀緩衝區的舊紀錄由背景執行緒批次寫入輪替的紀錄檔
+ *
+ * @author Ben
+ */
+public class StatusLog implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(StatusLog.class.getName());
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private final Entry[] ring;
+    private long sequence;
+    private final Path spillPath;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final BlockingQueue<Entry> spillQueue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread spillWriter;
+    private final Thread shutdownHook = new Thread(this::close, "status-log-shutdown");
+    private volatile boolean closed;
+    private OutputStream output;
+    private long outputBytes;
+
+    /**
+     * @param capacity 記憶體中保留的紀錄數
+     * @param spillPath 紀錄檔路徑, 輪替的檔案為 spillPath.1 ~ spillPath.(maxFiles - 1)
+     * @param maxFileBytes 單一紀錄檔大小上限
+     * @param maxFiles 保留的紀錄檔數量
+     */
+    public StatusLog(int capacity, Path spillPath, long maxFileBytes, int maxFiles) {
+        if (capacity <= 0 || maxFiles <= 0) {
+            throw new IllegalArgumentException("capacity and maxFiles must be positive");
+        }
+        this.ring = new Entry[capacity];
+        this.spillPath = Objects.requireNonNull(spillPath);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.spillQueue = new ArrayBlockingQueue<>(Math.max(capacity * 4, 8192));
+        this.spillWriter = ThreadPools.daemonThreadFactory("status-log-spill").newThread(this::spillLoop);
+        spillWriter.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 寫入一筆紀錄
+     *
+     * @param text 內容
+     */
+    public void append(String text) {
+        Entry entry = new Entry(System.currentTimeMillis(), text);
+        Entry evicted;
+        synchronized (this) {
+            int index = (int) (sequence++ % ring.length);
+            evicted = ring[index];
+            ring[index] = entry;
+        }
+        if (Objects.nonNull(evicted)) {
+            spill(evicted);
+        }
+    }
+
+    private void spill(Entry entry) {
+        if (closed || !spillQueue.offer(entry)) {
+            // 紀錄檔寫入跟不上時捨棄, 不讓寫入端等待磁碟
+            dropped.increment();
+        }
+    }
+
+    /**
+     * @return 已寫入的紀錄總數
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * 取得序號 fromSequence 之後仍在記憶體中的紀錄, 與同時讀取的紀錄總數
+     *
+     * @param fromSequence 已取得的紀錄總數
+     * @return 紀錄內容與取得時的紀錄總數
+     */
+    public synchronized Since since(long fromSequence) {
+        long first = Math.max(fromSequence, sequence - ring.length);
+        List<String> texts = new ArrayList<>((int) Math.max(0, sequence - first));
+        for (long i = Math.max(0, first); i < sequence; i++) {
+            texts.add(ring[(int) (i % ring.length)].text());
+        }
+        return new Since(texts, sequence, Math.max(0, first - fromSequence));
+    }
+
+    /**
+     * @param texts 紀錄內容, 依寫入順序
+     * @param sequence 取得時的紀錄總數, 下次以此呼叫 since
+     * @param skipped 已被擠出記憶體而未包含的紀錄數
+     */
+    public record Since(List<String> texts, long sequence, long skipped) {
+    }
+
+    /**
+     * @return 因紀錄檔寫入跟不上而捨棄的紀錄數
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public Path getSpillPath() {
+        return spillPath;
+    }
+
+    private void spillLoop() {
+        List<Entry> batch = new ArrayList<>();
+        while (!closed || !spillQueue.isEmpty()) {
+            try {
+                Entry first = spillQueue.poll(200, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                batch.add(first);
+                spillQueue.drainTo(batch);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        try {
+            for (Entry entry : batch) {
+                if (Objects.isNull(output) || outputBytes >= maxFileBytes) {
+                    roll();
+                }
+                String text = entry.text();
+                byte[] line = (TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(entry.timestamp())) + ' ' + text + (text.endsWith("\n") ? "" : System.lineSeparator()))
+                        .getBytes(StandardCharsets.UTF_8);
+                output.write(line);
+                outputBytes += line.length;
+            }
+            output.flush();
+        } catch (IOException ex) {
+            dropped.add(batch.size());
+            LOGGER.log(Level.WARNING, null, ex);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (Objects.nonNull(output)) {
+            output.close();
+            output = null;
+        }
+        if (Files.exists(spillPath) && Files.size(spillPath) >= maxFileBytes) {
+            for (int i = maxFiles - 1; i > 0; i--) {
+                Path source = i == 1 ? spillPath : rolledPath(i - 1);
+                if (Files.exists(source)) {
+                    Files.move(source, rolledPath(i), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.deleteIfExists(spillPath);
+        }
+        output = new BufferedOutputStream(Files.newOutputStream(spillPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        outputBytes = Files.size(spillPath);
+    }
+
+    private Path rolledPath(int index) {
+        return spillPath.resolveSibling(spillPath.getFileName() + "." + index);
+    }
+
+    /**
+     * 將記憶體中的紀錄也寫入紀錄檔後停止背景執行緒
+     */
+    @Override
+    public void close() {
+        List<Entry> remaining = new ArrayList<>(ring.length);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (long i = Math.max(0, sequence - ring.length); i < sequence; i++) {
+                remaining.add(ring[(int) (i % ring.length)]);
+            }
+        }
+        try {
+            spillWriter.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        write(remaining);
+        if (Objects.nonNull(output)) {
+            try {
+                output.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, null, ex);
+            }
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                // JVM 正在關閉, shutdown hook 會自行執行
+            }
+        }
+    }
+
+    private record Entry(long timestamp, String text) {
+    }
+}
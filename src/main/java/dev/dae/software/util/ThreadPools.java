@@ -0,0 +1,69 @@
+package dev.dae.software.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 執行緒池工廠, 執行環境支援虛擬執行緒 (JDK 21+) 時優先使用
+ *
+ * @author Ben
+ */
+public final class ThreadPools {
+
+    private static final MethodHandle VIRTUAL_EXECUTOR = lookupVirtualExecutor();
+
+    private ThreadPools() {
+    }
+
+    private static MethodHandle lookupVirtualExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 執行環境是否支援虛擬執行緒
+     */
+    public static boolean isVirtualThreadAvailable() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    /**
+     * 每個任務一條執行緒; JDK 21+ 為虛擬執行緒, 否則退回 daemon 的 cached thread pool
+     *
+     * @param name 執行緒名稱前綴 (僅平台執行緒使用)
+     * @return ExecutorService 物件
+     */
+    public static ExecutorService newPerTaskExecutor(String name) {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invokeExact();
+            } catch (Throwable ex) {
+                Logger.getLogger(ThreadPools.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+        return Executors.newCachedThreadPool(daemonThreadFactory(name));
+    }
+
+    /**
+     * @param name 執行緒名稱前綴
+     * @return 產生 daemon 執行緒的 ThreadFactory 物件
+     */
+    public static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, String.format("%s-%d", name, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,8 +2,8 @@ module dae.tenant.api {
     requires java.logging;
     requires java.desktop;
     requires java.net.http;
+    requires jdk.httpserver;
     requires org.eclipse.paho.client.mqttv3;
     requires org.bouncycastle.provider;
-    requires org.json;
     requires jakarta.json;
 }